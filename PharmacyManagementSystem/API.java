@@ -1,6 +1,14 @@
 package PharmacyManagementSystem;
 
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
 enum Request {
     Login,
     Logout,
@@ -33,6 +41,10 @@ enum Request {
     UpdateOrder,
     PurchaseStock,
     PickupPrescription,
+    GetAudit,
+    GetMetrics,
+    SearchStock,
+    FindCustomer,
 }
 
 enum Response {
@@ -46,124 +58,414 @@ enum Response {
     NotFound,
 }
 
+/** A {@link Response} together with the data a query read. */
+record Reply(Response response, Object data) implements Serializable {}
 
+/** One request of a batch passed to {@link API#receiveBatch(Session, List)}. */
+record Call(Request request, Object data) implements Serializable {}
 
 public class API {
     private Backend backend;
+    private Journal journal;
 
     API() {
         this.backend = Backend.get();
     }
+
+    /**
+     * @param journal Journal that records every successful mutation, or null.
+     */
+    API(final Journal journal) {
+        this.backend = Backend.get();
+        this.journal = journal;
+    }
+
+    /**
+     * @return A new session for a terminal.
+     */
+    public Session connect() {
+        return backend.openSession();
+    }
+
+    /**
+     * @param session
+     */
+    public void disconnect(final Session session) {
+        backend.closeSession(session);
+    }
+
     /**
+     * @param session The session making the request.
      * @param request
      * @param data
      */
+    public Response receive(final Session session, final Request request, Object data) {
+        long start = System.nanoTime();
+        Response response = receiveInSession(session, request, data);
+        Metrics.record(request, response, System.nanoTime() - start);
+        return response;
+    }
+
+    private Response receiveInSession(final Session session, final Request request, Object data) {
+        if (session == null || !session.isOpen()) return Response.Unauthorized;
+
+        return inSession(
+                session,
+                isShared(request),
+                () -> {
+                    Response response = authorize(request);
+                    if (response == Response.Ok) {
+                        byte[] entry = null;
+                        if (this.journal != null && Journal.isMutation(request)) {
+                            entry = this.journal.encode(request, backend.getLoggedIn(), data);
+                        }
+
+                        response = execute(request, data);
+                        if (entry != null && response == Response.Ok) this.journal.append(entry);
+                    }
+
+                    session.setPrompt(isPrompt(response) ? response : null);
+                    return response;
+                });
+    }
+
+    /**
+     * Runs a batch of requests in order under one acquisition of the backend lock. Each permission
+     * level is checked once unless a login or logout in the batch changes who is logged in. Every
+     * call is journaled and timed on its own, and a failed call does not stop the ones after it.
+     * Queries return what they read like {@link #query(Session, Request, Object)} does.
+     *
+     * @param session The session making the requests.
+     * @param calls
+     * @return One reply per call, in order.
+     */
+    public List<Reply> receiveBatch(final Session session, final List<Call> calls) {
+        List<Reply> replies = new ArrayList<>(calls.size());
+        if (session == null || !session.isOpen()) {
+            for (int i = 0; i < calls.size(); i++) {
+                replies.add(new Reply(Response.Unauthorized, null));
+            }
+            return replies;
+        }
+
+        boolean shared = true;
+        for (Call call : calls) shared &= isShared(call.request());
+
+        return inSession(
+                session,
+                shared,
+                () -> {
+                    EnumMap<PermissionLevel, Response> granted =
+                            new EnumMap<>(PermissionLevel.class);
+                    for (Call call : calls) {
+                        long start = System.nanoTime();
+                        Request request = call.request();
+                        Response response;
+                        switch (request) {
+                            case Login:
+                            case Logout:
+                            case ChangePassword:
+                            case RemoveNotification:
+                                response = authorize(request);
+                                granted.clear();
+                                break;
+                            default:
+                                response =
+                                        granted.computeIfAbsent(
+                                                permission(request), level -> authorize(request));
+                        }
+                        if (response != Response.Ok) {
+                            Metrics.record(request, response, System.nanoTime() - start);
+                            session.setPrompt(null);
+                            replies.add(new Reply(response, null));
+                            continue;
+                        }
+
+                        Object read = null;
+                        if (isQuery(request)) {
+                            read = read(request, call.data());
+                        } else {
+                            byte[] entry = null;
+                            if (this.journal != null && Journal.isMutation(request)) {
+                                entry =
+                                        this.journal.encode(
+                                                request, backend.getLoggedIn(), call.data());
+                            }
+
+                            response = execute(request, call.data());
+                            if (entry != null && response == Response.Ok) {
+                                this.journal.append(entry);
+                            }
+                        }
+                        Metrics.record(request, response, System.nanoTime() - start);
+                        session.setPrompt(isPrompt(response) ? response : null);
+                        replies.add(new Reply(response, read));
+                    }
+                    return replies;
+                });
+    }
+
+    /**
+     * Runs a Get request and returns what it read instead of printing it, for clients that are not
+     * on the terminal.
+     *
+     * @param session The session making the request.
+     * @param request One of the requests accepted by {@link #isQuery(Request)}.
+     * @param data The query parameters, only used by {@link Request#GetAudit}, {@link
+     *     Request#SearchStock} and {@link Request#FindCustomer}.
+     */
+    public Reply query(final Session session, final Request request, final Object data) {
+        long start = System.nanoTime();
+        Reply reply = queryInSession(session, request, data);
+        Metrics.record(request, reply.response(), System.nanoTime() - start);
+        return reply;
+    }
+
+    private Reply queryInSession(final Session session, final Request request, final Object data) {
+        if (!isQuery(request)) return new Reply(Response.BadRequest, null);
+        if (session == null || !session.isOpen()) return new Reply(Response.Unauthorized, null);
+
+        return inSession(
+                session,
+                true,
+                () -> {
+                    Response response = authorize(request);
+                    if (response != Response.Ok) return new Reply(response, null);
+                    return new Reply(Response.Ok, read(request, data));
+                });
+    }
+
+    /**
+     * Re-applies a journaled request as the account that originally made it, without checking
+     * permissions again. The request runs in a throwaway session that is never registered.
+     *
+     * @param account
+     * @param request
+     * @param data
+     */
+    Response replay(final Account account, final Request request, Object data) {
+        backend.getLock().writeLock().lock();
+        try {
+            if (request == Request.ChangePassword) {
+                if (account == null) return Response.NotFound;
+                account.setPasswordHash((UUID) data);
+                account.setFirstLogin(false);
+                return Response.Ok;
+            }
+
+            Session session = new Session();
+            session.setLoggedIn(account);
+            backend.enterSession(session);
+            try {
+                return execute(request, data);
+            } finally {
+                backend.exitSession();
+            }
+        } finally {
+            backend.getLock().writeLock().unlock();
+        }
+    }
+
+    /**
+     * Re-applies a journaled delivery.
+     *
+     * @param order
+     */
+    Response replayDelivery(final UUID order) {
+        backend.getLock().writeLock().lock();
+        try {
+            return backend.inventory.deliver(order) ? Response.Ok : Response.NotFound;
+        } finally {
+            backend.getLock().writeLock().unlock();
+        }
+    }
+
+    /**
+     * Re-applies the journaled failed attempts and lock of an account.
+     *
+     * @param id
+     * @param failure_attempts
+     * @param locked
+     */
+    Response replayLockout(final UUID id, final int failure_attempts, final boolean locked) {
+        backend.getLock().writeLock().lock();
+        try {
+            Account account = backend.getAccounts().get(id);
+            if (account == null) return Response.NotFound;
+            account.setFailureAttempts(failure_attempts);
+            account.setLocked(locked);
+            return Response.Ok;
+        } finally {
+            backend.getLock().writeLock().unlock();
+        }
+    }
+
+    /**
+     * Queries only read backend state. Checkouts lock the stock items in their cart, so lanes
+     * buying different items do not wait on each other.
+     *
+     * @param request
+     * @return Whether {@code request} may run alongside other shared requests.
+     */
+    static boolean isShared(final Request request) {
+        return isQuery(request)
+                || request == Request.PurchaseStock
+                || request == Request.PickupPrescription;
+    }
+
+    /**
+     * @param response
+     * @return Whether the client must answer {@code response} through {@link #send(Session,
+     *     Response, Object)}.
+     */
+    static boolean isPrompt(final Response response) {
+        return response == Response.FirstLogin
+                || response == Response.GetPassword
+                || response == Response.NewPassword;
+    }
+
+    /**
+     * @param request
+     * @return Whether {@code request} only reads backend state.
+     */
+    static boolean isQuery(final Request request) {
+        switch (request) {
+            case GetAccounts:
+            case GetInventory:
+            case GetCustomers:
+            case GetOrders:
+            case GetAutoOrders:
+            case GetNotifications:
+            case GetAudit:
+            case GetMetrics:
+            case SearchStock:
+            case FindCustomer:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param request
+     * @return The minimum permission level needed to make the request.
+     */
+    static PermissionLevel permission(final Request request) {
+        switch (request) {
+            case CreateAccount:
+            case RemoveAccount:
+            case UnlockAccount:
+            case UpdateAccount:
+                return PermissionLevel.Admin;
+            case CreateStock:
+            case CreateDiscount:
+            case CreateOrder:
+            case CreateAutoOrder:
+            case GetAutoOrders:
+            case RemoveDiscount:
+            case RemoveStock:
+            case RemoveCustomer:
+            case RemoveOrder:
+            case RemoveAutoOrder:
+            case UpdateStock:
+            case UpdateDrug:
+            case UpdateOrder:
+            case GetAudit:
+            case GetMetrics:
+                return PermissionLevel.PharmacyManager;
+            case CreatePrescription:
+            case UpdateCustomer:
+                return PermissionLevel.Pharmacist;
+            case GetAccounts:
+            case GetInventory:
+            case GetCustomers:
+            case GetOrders:
+                return PermissionLevel.PharmacyTechnician;
+            default:
+                return PermissionLevel.Cashier;
+        }
+    }
+
+    private Response authorize(final Request request) {
+        switch (request) {
+            case Login:
+            case Logout:
+                return Response.Ok;
+            case ChangePassword:
+            case RemoveNotification:
+                return backend.getLoggedIn() == null ? Response.Unauthorized : Response.Ok;
+            default:
+                return backend.auth(permission(request)) ? Response.Ok : Response.Forbidden;
+        }
+    }
+
     @SuppressWarnings("unchecked")
-	public Response receive(final Request request, Object data) {
+    private Response execute(final Request request, Object data) {
         switch (request) {
             case Login:
                 return backend.checkLocked((String) data);
             case Logout:
                 return backend.logout();
             case CreateAccount:
-                if (!backend.auth(PermissionLevel.Admin)) return Response.Forbidden;
                 return backend.createAccount((Account) data);
             case CreateStock:
-                if (!backend.auth(PermissionLevel.PharmacyManager)) return Response.Forbidden;
                 backend.inventory.addStock((Stock) data);
                 return Response.Ok;
             case CreateDiscount:
-                if (!backend.auth(PermissionLevel.PharmacyManager)) return Response.Forbidden;
                 return backend.createDiscount((List<Object>) data);
             case CreateCustomer:
-                if (!backend.auth(PermissionLevel.Cashier)) return Response.Forbidden;
                 return backend.createCustomer((Customer) data);
             case CreatePrescription:
-                if (!backend.auth(PermissionLevel.Pharmacist)) return Response.Forbidden;
                 return backend.createPrescription((List<Object>) data);
             case CreateOrder:
-                if (!backend.auth(PermissionLevel.PharmacyManager)) return Response.Forbidden;
                 return backend.createOrder((Order) data);
             case CreateAutoOrder:
-                if (!backend.auth(PermissionLevel.PharmacyManager)) return Response.Forbidden;
                 return backend.createAutoOrder((AutoOrder) data);
             case ChangePassword:
-                if (backend.getLoggedIn() == null) return Response.Unauthorized;
                 return backend.changePassword((String) data);
             case GetAccounts:
-                if (!backend.auth(PermissionLevel.PharmacyTechnician)) return Response.Forbidden;
-
-                Log.tui("Accounts: " + backend.getAccounts());
-                return Response.Ok;
             case GetInventory:
-                if (!backend.auth(PermissionLevel.PharmacyTechnician)) return Response.Forbidden;
-
-                Log.tui("Inventory: " + backend.inventory.getStock());
-                return Response.Ok;
             case GetCustomers:
-                if (!backend.auth(PermissionLevel.PharmacyTechnician)) return Response.Forbidden;
-
-                Log.tui("Patients: " + backend.getCustomers());
-                return Response.Ok;
             case GetOrders:
-                if (!backend.auth(PermissionLevel.PharmacyTechnician)) return Response.Forbidden;
-
-                Log.tui("Orders: " + backend.inventory.getOrders());
-                return Response.Ok;
             case GetAutoOrders:
-                if (!backend.auth(PermissionLevel.PharmacyManager)) return Response.Forbidden;
-
-                Log.tui("Auto Orders: " + backend.inventory.getAutoOrders());
+            case GetAudit:
+            case GetMetrics:
+            case SearchStock:
+            case FindCustomer:
+                Log.tui(read(request, data));
                 return Response.Ok;
             case GetNotifications:
-                if (backend.getLoggedIn() == null) return Response.Forbidden;
                 backend.getLoggedIn().printNotifications();
                 return Response.Ok;
             case RemoveAccount:
-                if (!backend.auth(PermissionLevel.Admin)) return Response.Forbidden;
                 return backend.removeAccount((String) data);
             case RemoveDiscount:
-                if (!backend.auth(PermissionLevel.PharmacyManager)) return Response.Forbidden;
                 return backend.removeDiscount((String) data);
             case RemoveStock:
-                if (!backend.auth(PermissionLevel.PharmacyManager)) return Response.Forbidden;
                 return backend.removeStock((String) data);
             case RemoveCustomer:
-                if (!backend.auth(PermissionLevel.PharmacyManager)) return Response.Forbidden;
                 return backend.removeCustomer((String) data);
             case RemoveOrder:
-                if (!backend.auth(PermissionLevel.PharmacyManager)) return Response.Forbidden;
                 return backend.removeOrder((String) data);
             case RemoveAutoOrder:
-                if (!backend.auth(PermissionLevel.PharmacyManager)) return Response.Forbidden;
                 return backend.removeAutoOrder((String) data);
             case RemoveNotification:
-                if (backend.getLoggedIn() == null) return Response.Unauthorized;
-
                 return backend.removeNotification((int) data);
             case UnlockAccount:
-                if (!backend.auth(PermissionLevel.Admin)) return Response.Forbidden;
                 return backend.unlockAccount((String) data);
             case UpdateAccount:
-                if (!backend.auth(PermissionLevel.Admin)) return Response.Forbidden;
                 return backend.updateAccount((List<Object>) data);
             case UpdateStock:
-                if (!backend.auth(PermissionLevel.PharmacyManager)) return Response.Forbidden;
                 return backend.updateStock((List<Object>) data);
             case UpdateDrug:
-                if (!backend.auth(PermissionLevel.PharmacyManager)) return Response.Forbidden;
                 return backend.updateDrug((List<Object>) data);
             case UpdateCustomer:
-                if (!backend.auth(PermissionLevel.Pharmacist)) return Response.Forbidden;
                 return backend.updateCustomer((List<Object>) data);
             case UpdateOrder:
-                if (!backend.auth(PermissionLevel.PharmacyManager)) return Response.Forbidden;
                 return backend.updateOrder((List<Object>) data);
             case PurchaseStock:
-                if (!backend.auth(PermissionLevel.Cashier)) return Response.Forbidden;
                 return backend.purchaseStock((List<Object>) data);
             case PickupPrescription:
-                if (!backend.auth(PermissionLevel.Cashier)) return Response.Forbidden;
                 return backend.pickupPrescription((List<Object>) data);
         }
 
@@ -171,29 +473,137 @@ public class API {
     }
 
     /**
+     * @param request A query.
+     * @param data The query parameters, only used by {@link Request#GetAudit}, {@link
+     *     Request#SearchStock} and {@link Request#FindCustomer}.
+     * @return What the query prints on the terminal.
+     */
+    private String read(final Request request, final Object data) {
+        switch (request) {
+            case GetAccounts:
+                return "Accounts: " + backend.getAccounts();
+            case GetInventory:
+                return "Inventory: " + backend.inventory.getStock();
+            case GetCustomers:
+                return "Patients: " + backend.getCustomers();
+            case GetOrders:
+                return "Orders: " + backend.inventory.getOrders();
+            case GetAutoOrders:
+                return "Auto Orders: " + backend.inventory.getAutoOrders();
+            case GetNotifications:
+                Account account = backend.getLoggedIn();
+                synchronized (account) {
+                    return "Notifications: " + account.getNotifications();
+                }
+            case GetAudit:
+                return "Audit: " + readAudit(data);
+            case GetMetrics:
+                return "Metrics:\n" + Metrics.report();
+            case SearchStock:
+                return "Matches: " + backend.inventory.searchStock((String) data);
+            case FindCustomer:
+                List<?> customer = (List<?>) data;
+                return "Patients: "
+                        + backend.findCustomers(
+                                (String) customer.get(1), (LocalDateTime) customer.get(0));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param data {@code [from, to, account ID, entity ID]}, any of which may be null.
+     * @return The matching audit records.
+     */
+    private List<AuditRecord> readAudit(final Object data) {
+        List<?> filter = data instanceof List ? (List<?>) data : List.of();
+        List<AuditRecord> records =
+                Log.queryAudit(
+                        filter.size() > 0 ? (LocalDateTime) filter.get(0) : null,
+                        filter.size() > 1 ? (LocalDateTime) filter.get(1) : null,
+                        filter.size() > 2 ? (UUID) filter.get(2) : null,
+                        filter.size() > 3 ? (UUID) filter.get(3) : null);
+        return records == null ? List.of() : records;
+    }
+
+    /**
+     * Answers a prompt. Only the prompt the last request of the session returned can be answered,
+     * and only once, so a client cannot set a password by answering a prompt it was never given.
+     *
+     * @param session The session the response belongs to.
      * @param response
      * @param data
+     * @return {@link Response#BadRequest} if {@code response} does not answer the prompt of the
+     *     session, {@link Response#Ok} for any other response, which needs no answer.
      */
-    public void send(final Response response, Object data) {
-        Account logging_in = backend.getLoggingIn();
-        Account logged_in = backend.getLoggedIn();
+    public Response send(final Session session, final Response response, Object data) {
+        if (session == null || !session.isOpen()) return Response.Unauthorized;
+        if (!isPrompt(response)) return Response.Ok;
 
-        if (data == null) {
-            Log.error("Null response data: " + response);
-            return;
+        return inSession(
+                session,
+                false,
+                () -> {
+                    Response prompt = session.getPrompt();
+                    session.setPrompt(null);
+                    if (prompt != response || !(data instanceof String)) {
+                        Log.warning(
+                                Category.Server,
+                                "Rejected {} without a matching prompt.",
+                                response);
+                        return Response.BadRequest;
+                    }
+                    return respond(response, (String) data);
+                });
+    }
+
+    /**
+     * Enters {@code session} on the calling thread and runs {@code action} under the backend lock.
+     *
+     * @param session
+     * @param shared Whether the read side of the lock is enough.
+     * @param action
+     */
+    private <T> T inSession(final Session session, final boolean shared, final Supplier<T> action) {
+        session.touch();
+        Lock lock = shared ? backend.getLock().readLock() : backend.getLock().writeLock();
+        lock.lock();
+        backend.enterSession(session);
+        try {
+            return action.get();
+        } finally {
+            backend.exitSession();
+            lock.unlock();
         }
+    }
+
+    private Response respond(final Response response, final String data) {
+        Account logging_in = backend.getLoggingIn();
+        Account logged_in = backend.getLoggedIn();
 
         switch (response) {
             case FirstLogin:
-                logging_in.setPassword((String) data);
+                if (logging_in == null || !logging_in.isFirstLogin()) return Response.Forbidden;
+                logging_in.setPassword(data);
                 logging_in.setFirstLogin(false);
+                journalPassword(logging_in);
                 break;
             case GetPassword:
-                backend.login((String) data);
+                if (logging_in == null) return Response.Forbidden;
+                backend.login(data);
                 break;
             case NewPassword:
-                logged_in.setPassword((String) data);
+                if (logged_in == null) return Response.Forbidden;
+                logged_in.setPassword(data);
+                journalPassword(logged_in);
                 backend.logout();
         }
+        return Response.Ok;
+    }
+
+    private void journalPassword(final Account account) {
+        if (this.journal == null) return;
+        this.journal.append(
+                this.journal.encode(Request.ChangePassword, account, account.getPassword()));
     }
 }
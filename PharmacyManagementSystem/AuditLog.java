@@ -0,0 +1,559 @@
+package PharmacyManagementSystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * One audit record.
+ *
+ * @param time
+ * @param account The ID of the account that was logged in, or null.
+ * @param entity The ID of the stock, order, customer or account the record is about, or null.
+ * @param category
+ * @param message
+ */
+record AuditRecord(LocalDateTime time, UUID account, UUID entity, Category category, String message)
+        implements Serializable {
+    @Override
+    public String toString() {
+        return "["
+                + this.time
+                + ", Account: "
+                + this.account
+                + ", Entity: "
+                + this.entity
+                + ", "
+                + this.message
+                + "]";
+    }
+}
+
+/**
+ * {@link AuditLog} stores {@link AuditRecord}s in binary segment files next to the text activity
+ * log, so audit history can be searched by time, account and entity without reading it all.
+ *
+ * <p>A segment is a sequence of {@code [int length][long time][UUID account][UUID entity][byte
+ * category][UTF-8 message]} records. Every {@link Config#auditIndexInterval()} records start a
+ * block, and the sparse index of a segment keeps the offset and time range of each block and, per
+ * account and entity, the blocks that mention it. A query skips segments and blocks whose time
+ * range or postings cannot match, and reads the rest through a memory-mapped view of the file.
+ *
+ * <p>When a segment reaches {@link Config#auditSegmentBytes()} it is sealed: its index is written
+ * to a {@code .idx} file and a new segment is started. The index of the open segment is rebuilt by
+ * scanning it on startup, and a torn record at its end is cut off.
+ */
+class AuditLog {
+    private static final int HEADER_BYTES = Long.BYTES * 5 + 1;
+    private static final int INDEX_MAGIC = 0x41554458;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    /** The block numbers that mention one account or entity, in ascending order. */
+    private static class Postings {
+        private int[] blocks = new int[4];
+        private int count;
+
+        private void add(final int block) {
+            if (this.count > 0 && this.blocks[this.count - 1] == block) return;
+            if (this.count == this.blocks.length) {
+                this.blocks = Arrays.copyOf(this.blocks, this.count * 2);
+            }
+            this.blocks[this.count++] = block;
+        }
+    }
+
+    /** One segment file and its sparse index. */
+    private static class Segment {
+        private final long number;
+        private final File file;
+        private long size;
+        private int records;
+        private long min_time = Long.MAX_VALUE;
+        private long max_time = Long.MIN_VALUE;
+        private int blocks;
+        private long[] block_offsets = new long[16];
+        private long[] block_min = new long[16];
+        private long[] block_max = new long[16];
+        private final HashMap<UUID, Postings> accounts = new HashMap<>();
+        private final HashMap<UUID, Postings> entities = new HashMap<>();
+        private MappedByteBuffer map;
+
+        private Segment(final File directory, final long number) {
+            this.number = number;
+            this.file = new File(directory, String.format("%010d.seg", number));
+        }
+
+        private File indexFile() {
+            return new File(this.file.getParentFile(), String.format("%010d.idx", this.number));
+        }
+
+        private void index(
+                final long offset,
+                final int interval,
+                final long time,
+                final UUID account,
+                final UUID entity) {
+            if (this.records % interval == 0) {
+                if (this.blocks == this.block_offsets.length) {
+                    int length = this.blocks * 2;
+                    this.block_offsets = Arrays.copyOf(this.block_offsets, length);
+                    this.block_min = Arrays.copyOf(this.block_min, length);
+                    this.block_max = Arrays.copyOf(this.block_max, length);
+                }
+                this.block_offsets[this.blocks] = offset;
+                this.block_min[this.blocks] = time;
+                this.block_max[this.blocks] = time;
+                this.blocks++;
+            }
+            int block = this.blocks - 1;
+            this.block_min[block] = Math.min(this.block_min[block], time);
+            this.block_max[block] = Math.max(this.block_max[block], time);
+            this.min_time = Math.min(this.min_time, time);
+            this.max_time = Math.max(this.max_time, time);
+            if (account != null)
+                this.accounts.computeIfAbsent(account, k -> new Postings()).add(block);
+            if (entity != null)
+                this.entities.computeIfAbsent(entity, k -> new Postings()).add(block);
+            this.records++;
+        }
+
+        private long blockEnd(final int block) {
+            return block + 1 < this.blocks ? this.block_offsets[block + 1] : this.size;
+        }
+
+        /**
+         * @return The blocks that may hold a matching record, in ascending order.
+         */
+        private int[] candidates(
+                final long from, final long to, final UUID account, final UUID entity) {
+            if (this.records == 0 || this.max_time < from || this.min_time > to) return new int[0];
+
+            int[] blocks = null;
+            if (account != null) blocks = postings(this.accounts.get(account));
+            if (entity != null) {
+                int[] matches = postings(this.entities.get(entity));
+                blocks = blocks == null ? matches : intersect(blocks, matches);
+            }
+            if (blocks == null) {
+                blocks = new int[this.blocks];
+                for (int i = 0; i < this.blocks; i++) blocks[i] = i;
+            }
+
+            int count = 0;
+            for (int block : blocks) {
+                if (this.block_max[block] >= from && this.block_min[block] <= to) {
+                    blocks[count++] = block;
+                }
+            }
+            return Arrays.copyOf(blocks, count);
+        }
+
+        private void writeIndex() throws IOException {
+            try (DataOutputStream out =
+                    new DataOutputStream(
+                            new BufferedOutputStream(new FileOutputStream(indexFile())))) {
+                out.writeInt(INDEX_MAGIC);
+                out.writeLong(this.size);
+                out.writeInt(this.records);
+                out.writeLong(this.min_time);
+                out.writeLong(this.max_time);
+                out.writeInt(this.blocks);
+                for (int i = 0; i < this.blocks; i++) {
+                    out.writeLong(this.block_offsets[i]);
+                    out.writeLong(this.block_min[i]);
+                    out.writeLong(this.block_max[i]);
+                }
+                writePostings(out, this.accounts);
+                writePostings(out, this.entities);
+            }
+        }
+
+        /**
+         * @return Whether the index file exists and matches the segment.
+         */
+        private boolean readIndex() {
+            File index = indexFile();
+            if (!index.exists()) return false;
+            try (DataInputStream in =
+                    new DataInputStream(new BufferedInputStream(new FileInputStream(index)))) {
+                if (in.readInt() != INDEX_MAGIC) return false;
+                this.size = in.readLong();
+                if (this.size != this.file.length()) return false;
+                this.records = in.readInt();
+                this.min_time = in.readLong();
+                this.max_time = in.readLong();
+                this.blocks = in.readInt();
+                this.block_offsets = new long[Math.max(16, this.blocks)];
+                this.block_min = new long[this.block_offsets.length];
+                this.block_max = new long[this.block_offsets.length];
+                for (int i = 0; i < this.blocks; i++) {
+                    this.block_offsets[i] = in.readLong();
+                    this.block_min[i] = in.readLong();
+                    this.block_max[i] = in.readLong();
+                }
+                readPostings(in, this.accounts);
+                readPostings(in, this.entities);
+                return true;
+            } catch (IOException e) {
+                Log.warning("Rebuilding unreadable audit index " + index + ": " + e);
+                return false;
+            }
+        }
+
+        private void reset() {
+            this.size = 0;
+            this.records = 0;
+            this.min_time = Long.MAX_VALUE;
+            this.max_time = Long.MIN_VALUE;
+            this.blocks = 0;
+            this.accounts.clear();
+            this.entities.clear();
+        }
+
+        /**
+         * @return A read-only view of the whole segment.
+         */
+        private ByteBuffer view() throws IOException {
+            if (this.map == null || this.map.capacity() < this.size) {
+                try (FileChannel channel =
+                        FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+                    this.map = channel.map(FileChannel.MapMode.READ_ONLY, 0, this.size);
+                }
+            }
+            return this.map.duplicate();
+        }
+
+        private static void writePostings(
+                final DataOutputStream out, final Map<UUID, Postings> postings) throws IOException {
+            out.writeInt(postings.size());
+            for (Map.Entry<UUID, Postings> entry : postings.entrySet()) {
+                out.writeLong(entry.getKey().getMostSignificantBits());
+                out.writeLong(entry.getKey().getLeastSignificantBits());
+                Postings blocks = entry.getValue();
+                out.writeInt(blocks.count);
+                for (int i = 0; i < blocks.count; i++) out.writeInt(blocks.blocks[i]);
+            }
+        }
+
+        private static void readPostings(
+                final DataInputStream in, final Map<UUID, Postings> postings) throws IOException {
+            postings.clear();
+            int keys = in.readInt();
+            for (int i = 0; i < keys; i++) {
+                UUID key = new UUID(in.readLong(), in.readLong());
+                Postings blocks = new Postings();
+                blocks.count = in.readInt();
+                blocks.blocks = new int[Math.max(4, blocks.count)];
+                for (int j = 0; j < blocks.count; j++) blocks.blocks[j] = in.readInt();
+                postings.put(key, blocks);
+            }
+        }
+
+        private static int[] postings(final Postings postings) {
+            return postings == null ? new int[0] : Arrays.copyOf(postings.blocks, postings.count);
+        }
+
+        private static int[] intersect(final int[] a, final int[] b) {
+            int[] both = new int[Math.min(a.length, b.length)];
+            int count = 0;
+            for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+                if (a[i] < b[j]) i++;
+                else if (a[i] > b[j]) j++;
+                else {
+                    both[count++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(both, count);
+        }
+    }
+
+    private final File directory;
+    private final long segment_bytes;
+    private final int interval;
+    private final ArrayList<Segment> segments;
+    private final ByteBuffer pending;
+    private FileChannel channel;
+
+    /**
+     * Opens the audit segments in {@code directory}, creating it when needed.
+     *
+     * @param directory
+     */
+    AuditLog(final String directory) throws IOException {
+        this.directory = new File(directory);
+        this.directory.mkdirs();
+        this.segment_bytes = Config.auditSegmentBytes();
+        this.interval = Config.auditIndexInterval();
+        this.segments = new ArrayList<>();
+        this.pending = ByteBuffer.allocate(1 << 16);
+
+        File[] files = this.directory.listFiles((dir, name) -> name.endsWith(".seg"));
+        long[] numbers = new long[files == null ? 0 : files.length];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = Long.parseLong(files[i].getName().replace(".seg", ""));
+        }
+        Arrays.sort(numbers);
+
+        for (int i = 0; i < numbers.length; i++) {
+            Segment segment = new Segment(this.directory, numbers[i]);
+            boolean last = i == numbers.length - 1;
+            if (last || !segment.readIndex()) {
+                scan(segment);
+                if (!last) segment.writeIndex();
+            }
+            this.segments.add(segment);
+        }
+        if (this.segments.isEmpty()) this.segments.add(new Segment(this.directory, 0));
+        openActive();
+    }
+
+    /**
+     * Buffers a record, it reaches the file on the next {@link #flush()}.
+     *
+     * @param record
+     */
+    synchronized void append(final AuditRecord record) throws IOException {
+        byte[] message = record.message().getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_BYTES + message.length;
+        Segment active = active();
+        if (active.size > 0 && active.size + Integer.BYTES + length > this.segment_bytes) {
+            roll();
+            active = active();
+        }
+        if (this.pending.remaining() < Integer.BYTES + length) flush();
+
+        ByteBuffer out =
+                this.pending.remaining() >= Integer.BYTES + length
+                        ? this.pending
+                        : ByteBuffer.allocate(Integer.BYTES + length);
+        long time = record.time().atZone(ZONE).toInstant().toEpochMilli();
+        out.putInt(length);
+        out.putLong(time);
+        putUUID(out, record.account());
+        putUUID(out, record.entity());
+        out.put((byte) record.category().ordinal());
+        out.put(message);
+        if (out != this.pending) {
+            out.flip();
+            while (out.hasRemaining()) this.channel.write(out);
+        }
+
+        active.index(active.size, this.interval, time, record.account(), record.entity());
+        active.size += Integer.BYTES + length;
+    }
+
+    /** Writes the buffered records to the open segment. */
+    synchronized void flush() throws IOException {
+        this.pending.flip();
+        while (this.pending.hasRemaining()) this.channel.write(this.pending);
+        this.pending.clear();
+    }
+
+    /** Writes the buffered records and forces them to disk. */
+    synchronized void sync() throws IOException {
+        flush();
+        this.channel.force(false);
+    }
+
+    synchronized void close() throws IOException {
+        sync();
+        this.channel.close();
+    }
+
+    /**
+     * @param from The earliest time, or null.
+     * @param to The latest time, or null.
+     * @param account An account ID, or null for any account.
+     * @param entity An entity ID, or null for any entity.
+     * @param limit
+     * @return The most recent {@code limit} matching records, oldest first.
+     */
+    synchronized List<AuditRecord> query(
+            final LocalDateTime from,
+            final LocalDateTime to,
+            final UUID account,
+            final UUID entity,
+            final int limit)
+            throws IOException {
+        flush();
+        long start = from == null ? Long.MIN_VALUE : from.atZone(ZONE).toInstant().toEpochMilli();
+        long end = to == null ? Long.MAX_VALUE : to.atZone(ZONE).toInstant().toEpochMilli();
+
+        List<AuditRecord> found = new ArrayList<>();
+        List<AuditRecord> block_found = new ArrayList<>();
+        for (int s = this.segments.size() - 1; s >= 0 && found.size() < limit; s--) {
+            Segment segment = this.segments.get(s);
+            int[] blocks = segment.candidates(start, end, account, entity);
+            if (blocks.length == 0) continue;
+
+            ByteBuffer view = segment.view();
+            for (int b = blocks.length - 1; b >= 0 && found.size() < limit; b--) {
+                block_found.clear();
+                long position = segment.block_offsets[blocks[b]];
+                long block_end = segment.blockEnd(blocks[b]);
+                while (position < block_end) {
+                    view.position((int) position);
+                    int length = view.getInt();
+                    long time = view.getLong();
+                    UUID record_account = getUUID(view);
+                    UUID record_entity = getUUID(view);
+                    if (time >= start
+                            && time <= end
+                            && (account == null || account.equals(record_account))
+                            && (entity == null || entity.equals(record_entity))) {
+                        block_found.add(decode(view, length, time, record_account, record_entity));
+                    }
+                    position += Integer.BYTES + length;
+                }
+                for (int i = block_found.size() - 1; i >= 0 && found.size() < limit; i--) {
+                    found.add(block_found.get(i));
+                }
+            }
+        }
+        Collections.reverse(found);
+        return found;
+    }
+
+    /**
+     * @return The number of segment files.
+     */
+    synchronized int segments() {
+        return this.segments.size();
+    }
+
+    /**
+     * Picks the entity an audit message is about from one of its arguments.
+     *
+     * @param argument
+     * @return The ID of a stock item, order, customer, prescription or account, a UUID argument
+     *     itself, the first such ID in a list, or null.
+     */
+    static UUID entityOf(final Object argument) {
+        if (argument instanceof UUID) return (UUID) argument;
+        if (argument instanceof Stock) return ((Stock) argument).getID();
+        if (argument instanceof Order) return ((Order) argument).getID();
+        if (argument instanceof AutoOrder) return ((AutoOrder) argument).getID();
+        if (argument instanceof Customer) return ((Customer) argument).getID();
+        if (argument instanceof Prescription) return ((Prescription) argument).getID();
+        if (argument instanceof Account) return ((Account) argument).getID();
+        if (argument instanceof String && ((String) argument).length() == 36) {
+            try {
+                return UUID.fromString((String) argument);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        if (argument instanceof List) {
+            for (Object element : (List<?>) argument) {
+                UUID id = entityOf(element);
+                if (id != null) return id;
+            }
+        }
+        return null;
+    }
+
+    private Segment active() {
+        return this.segments.get(this.segments.size() - 1);
+    }
+
+    private void openActive() throws IOException {
+        Segment active = active();
+        this.channel =
+                FileChannel.open(
+                        active.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.truncate(active.size);
+        this.channel.position(active.size);
+    }
+
+    private void roll() throws IOException {
+        sync();
+        this.channel.close();
+        Segment sealed = active();
+        sealed.writeIndex();
+        this.segments.add(new Segment(this.directory, sealed.number + 1));
+        openActive();
+    }
+
+    /** Rebuilds the index of a segment from its records, ignoring a torn record at the end. */
+    private void scan(final Segment segment) throws IOException {
+        segment.reset();
+        long size = segment.file.length();
+        if (size == 0) return;
+        ByteBuffer view;
+        try (FileChannel channel =
+                FileChannel.open(segment.file.toPath(), StandardOpenOption.READ)) {
+            view = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        long position = 0;
+        while (position + Integer.BYTES + HEADER_BYTES <= size) {
+            view.position((int) position);
+            int length = view.getInt();
+            if (length < HEADER_BYTES || position + Integer.BYTES + length > size) break;
+            long time = view.getLong();
+            UUID account = getUUID(view);
+            UUID entity = getUUID(view);
+            segment.index(position, this.interval, time, account, entity);
+            position += Integer.BYTES + length;
+            segment.size = position;
+        }
+        if (segment.size < size) {
+            Log.warning("Discarding torn audit record in " + segment.file + ".");
+        }
+    }
+
+    private static AuditRecord decode(
+            final ByteBuffer view,
+            final int length,
+            final long time,
+            final UUID account,
+            final UUID entity) {
+        int ordinal = view.get();
+        Category category =
+                ordinal >= 0 && ordinal < Category.values().length
+                        ? Category.values()[ordinal]
+                        : Category.General;
+        byte[] message = new byte[length - HEADER_BYTES];
+        view.get(message);
+        return new AuditRecord(
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZONE),
+                account,
+                entity,
+                category,
+                new String(message, StandardCharsets.UTF_8));
+    }
+
+    private static void putUUID(final ByteBuffer out, final UUID id) {
+        out.putLong(id == null ? 0 : id.getMostSignificantBits());
+        out.putLong(id == null ? 0 : id.getLeastSignificantBits());
+    }
+
+    private static UUID getUUID(final ByteBuffer in) {
+        long most = in.getLong();
+        long least = in.getLong();
+        return most == 0 && least == 0 ? null : new UUID(most, least);
+    }
+}
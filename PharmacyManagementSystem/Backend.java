@@ -1,38 +1,83 @@
 package PharmacyManagementSystem;
 
+import java.io.Serializable;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Period;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * The {@link Backend} is a singleton class that is responsible for managing the core functionality
  * of the Pharmacy Management system. The {@link #get()} method is used to retrieve the backend
  * instance.
+ *
+ * <p>Many {@link Session}s share the backend. The {@link API} enters the caller's session on the
+ * request thread, so {@link #getLoggedIn()} answers for that session. Queries and checkouts hold
+ * the read side of {@link #getLock()} and run concurrently, while other mutations and maintenance
+ * hold the write side. Checkouts also lock the stock items in their cart through {@link
+ * InventoryControl#getStockLocks()}.
  */
 public class Backend {
     public InventoryControl inventory;
 
     private static Backend backend;
 
-    private HashMap<UUID, Account> accounts;
-    private HashMap<UUID, Customer> customers;
-    private List<Stock> last_purchase;
+    private Map<UUID, Account> accounts;
+    private Map<UUID, Customer> customers;
+    private final PatientIndex patients;
 
-    private Account logging_in;
-    private Account logged_in;
+    private final ConcurrentHashMap<UUID, Session> sessions;
+    private final ThreadLocal<Session> session;
+    private final ReentrantReadWriteLock lock;
+    private final Object notification_lock;
+    private final Maintenance maintenance;
+    private Journal journal;
 
     Backend() {
+        this.sessions = new ConcurrentHashMap<UUID, Session>();
+        this.session = new ThreadLocal<Session>();
+        this.lock = new ReentrantReadWriteLock();
+        this.notification_lock = new Object();
         this.inventory = new InventoryControl();
-        this.accounts = new HashMap<UUID, Account>();
-        this.customers = new HashMap<UUID, Customer>();
-        this.last_purchase = new ArrayList<Stock>();
+        this.accounts = new UUIDMap<Account>();
+        this.customers = new UUIDMap<Customer>();
+        this.patients = new PatientIndex();
+        this.maintenance = new Maintenance(this.lock.writeLock());
+        this.maintenance.add("sessions", Config.sessionUpdateMillis(), this::updateSessions);
+        this.maintenance.add(
+                "auto-orders", Config.autoOrderUpdateMillis(), this.inventory::updateAutoOrders);
+        // Expiry notifications can only be delivered while someone is logged in.
+        this.maintenance.add(
+                "expiry",
+                Config.expiryUpdateMillis(),
+                () -> {
+                    if (isAnyoneLoggedIn()) sendNotification(this.inventory.updateExpired());
+                });
+        this.maintenance.add("customers", Config.customerUpdateMillis(), this::updateCustomers);
+        this.maintenance.add(
+                "no-quantity", Config.noQuantityUpdateMillis(), this.inventory::updateNoQuantity);
+        this.maintenance.add(
+                "discrepancies", Config.discrepancyUpdateMillis(), this::updateDiscrepancies);
+        this.maintenance.addUnlocked("metrics", Config.metricsDumpMillis(), Metrics::dump);
+        this.maintenance.addUnlocked(
+                "checkpoint", Config.checkpointUpdateMillis(), this::updateCheckpoint);
+        Metrics.gauge("stock", () -> this.inventory.getStock().size());
+        Metrics.gauge("orders", () -> this.inventory.getOrders().size());
+        Metrics.gauge("auto-orders", () -> this.inventory.getAutoOrders().size());
+        Metrics.gauge("customers", () -> this.customers.size());
+        Metrics.gauge("patient-keys", () -> this.patients.size());
+        Metrics.gauge("accounts", () -> this.accounts.size());
+        Metrics.gauge("sessions", () -> this.sessions.size());
+        Metrics.gauge("deliveries", () -> this.inventory.getDeliveries());
+        Metrics.gauge("maintenance", () -> this.maintenance);
+        Metrics.gauge("log-dropped", Log::dropped);
         Log.auditAnonymous("Backend initialized.");
 
         initAdmin();
@@ -45,47 +90,228 @@ public class Backend {
         return backend;
     }
 
+    /**
+     * Runs every maintenance job once on the calling thread. Requests do not call this, the jobs
+     * run on their own after {@link #startMaintenance()}. Deliveries are not part of the update,
+     * the {@link DeliveryScheduler} fires them.
+     */
     public void update() {
-        this.inventory.updateAutoOrders();
-        this.inventory.updateDeliveries();
-        sendNotification(this.inventory.updateExpired());
-        updateCustomers();
-        this.inventory.updateNoQuantity();
-        updateDiscrepancies();
+        this.maintenance.runAll();
+    }
+
+    /**
+     * Starts running the maintenance jobs in the background, each at its configured period, and
+     * firing order deliveries. Until then the backend only changes through requests.
+     */
+    public void startMaintenance() {
+        this.inventory.getDeliveries().start();
+        this.maintenance.start();
+    }
+
+    public void stopMaintenance() {
+        this.maintenance.stop();
+        this.inventory.getDeliveries().stop();
+    }
+
+    /**
+     * @param journal Journal that records the changes maintenance and deliveries make, or null.
+     */
+    public void setJournal(final Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Checkpoints once enough entries were journaled since the last checkpoint, whether clients or
+     * maintenance appended them. Runs unlocked, the checkpoint takes the lock itself.
+     */
+    private void updateCheckpoint() {
+        Journal journal = this.journal;
+        if (journal != null && journal.shouldCheckpoint()) journal.checkpoint(this);
+    }
+
+    /**
+     * Journals a change made by maintenance rather than by a client, as the request that would make
+     * it with no account, so recovery replays it between the same requests.
+     *
+     * @param request
+     * @param data
+     */
+    void journal(final Request request, final Object data) {
+        if (this.journal != null) this.journal.append(this.journal.encode(request, null, data));
+    }
+
+    /**
+     * Journals the delivery of an open order.
+     *
+     * @param order
+     */
+    void journalDelivery(final UUID order) {
+        if (this.journal != null) this.journal.append(this.journal.encodeDelivery(order));
+    }
+
+    /**
+     * Journals the failed attempts and lock of an account after a login changed them.
+     *
+     * @param account
+     */
+    void journalLockout(final Account account) {
+        if (this.journal != null) this.journal.append(this.journal.encodeLockout(account));
+    }
+
+    /**
+     * @return The maintenance jobs and their durations.
+     */
+    public Maintenance getMaintenance() {
+        return this.maintenance;
+    }
+
+    /**
+     * @return The lock shared by queries and held exclusively by mutations and maintenance.
+     */
+    public ReentrantReadWriteLock getLock() {
+        return this.lock;
+    }
+
+    // Session API
+    /**
+     * @return A new session with nobody logged in.
+     */
+    public Session openSession() {
+        Session session = new Session();
+        this.sessions.put(session.getToken(), session);
+        Log.info(Category.Server, "Session opened: {}", session.getToken());
+        return session;
+    }
+
+    /**
+     * @param session
+     */
+    public void closeSession(final Session session) {
+        session.close();
+        this.sessions.remove(session.getToken());
+        Log.info(Category.Server, "Session closed: {}", session.getToken());
+    }
+
+    /**
+     * @param token
+     * @return The open session with that token, or null.
+     */
+    public Session findSession(final UUID token) {
+        return this.sessions.get(token);
+    }
+
+    public Map<UUID, Session> getSessions() {
+        return this.sessions;
+    }
+
+    /**
+     * Makes {@code session} the current session of the calling thread until {@link #exitSession()}.
+     *
+     * @param session
+     */
+    void enterSession(final Session session) {
+        this.session.set(session);
+    }
+
+    void exitSession() {
+        this.session.remove();
+    }
+
+    /**
+     * @return The session of the calling thread, or null outside of a request.
+     */
+    public Session getSession() {
+        return this.session.get();
     }
 
-    public HashMap<UUID, Account> getAccounts() {
+    public Map<UUID, Account> getAccounts() {
         return accounts;
     }
 
-    public HashMap<UUID, Customer> getCustomers() {
+    public void setAccounts(final Map<UUID, Account> accounts) {
+        this.accounts = accounts;
+    }
+
+    public Map<UUID, Customer> getCustomers() {
+        return customers;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void setCustomers(final Map<UUID, Customer> customers) {
+        this.customers = customers;
+        this.patients.clear();
+        if (customers instanceof MappedTable) {
+            // Index straight from the file so records stay undecoded until they are used.
+            ((MappedTable<Customer>) customers)
+                    .scan(
+                            (id, record) ->
+                                    this.patients.add(
+                                            id,
+                                            CustomerCodec.name(record),
+                                            CustomerCodec.birthday(record)),
+                            this.patients::add);
+        } else {
+            for (Customer customer : customers.values()) this.patients.add(customer);
+        }
+    }
+
+    /**
+     * Adds a batch of imported customers without auditing each one.
+     *
+     * @param customers
+     */
+    public void importCustomers(final List<Customer> customers) {
+        for (Customer customer : customers) {
+            Customer previous = this.customers.put(customer.getID(), customer);
+            if (previous != null) this.patients.remove(previous);
+            this.patients.add(customer);
+        }
+    }
+
+    /**
+     * @param name In any case, with or without accents and punctuation.
+     * @param birthday Only the date is compared.
+     * @return The customers with that name and birthday.
+     */
+    public List<Customer> findCustomers(final String name, final LocalDateTime birthday) {
+        List<Customer> customers = new ArrayList<>();
+        for (UUID id : this.patients.find(name, birthday)) {
+            Customer customer = this.customers.get(id);
+            if (customer != null) customers.add(customer);
+        }
         return customers;
     }
 
     public Account getLoggingIn() {
-        return logging_in;
+        Session session = getSession();
+        return session == null ? null : session.getLoggingIn();
     }
 
     public Account getLoggedIn() {
-        return logged_in;
+        Session session = getSession();
+        return session == null ? null : session.getLoggedIn();
     }
 
     public void login(String data) {
         UUID key = UUID.nameUUIDFromBytes(data.getBytes());
-        if (this.logging_in.getPassword().equals(key)) {
-            setLoggedIn(this.logging_in);
+        Account logging_in = getLoggingIn();
+        if (logging_in.getPassword().equals(key)) {
+            setLoggedIn(logging_in);
             setLoggingIn(null);
-            this.logged_in.setFailureAttempts(0);
+            if (logging_in.getFailureAttempts() != 0) {
+                logging_in.setFailureAttempts(0);
+                journalLockout(logging_in);
+            }
 
             Log.tui(
                     "Welcome "
-                            + this.logged_in.getName()
+                            + logging_in.getName()
                             + ". You are "
-                            + this.logged_in.getAge()
+                            + logging_in.getAge()
                             + " years old.");
-            this.logged_in.printNotifications();
+            logging_in.printNotifications();
         } else {
-            loginFailed(this.logging_in);
+            loginFailed(logging_in);
             setLoggingIn(null);
 
             Log.info("Login failed.");
@@ -127,7 +353,9 @@ public class Backend {
 
     public Response createCustomer(final Customer customer) {
         if (customer == null) return Response.BadRequest;
-        this.customers.put(customer.getID(), customer);
+        Customer previous = this.customers.put(customer.getID(), customer);
+        if (previous != null) this.patients.remove(previous);
+        this.patients.add(customer);
 
         return Response.Ok;
     }
@@ -181,22 +409,25 @@ public class Backend {
     }
 
     public Response removeStock(final String data) {
-        if (this.inventory.getStock().remove(UUID.fromString(data)) != null) return Response.Ok;
+        if (this.inventory.removeStock(UUID.fromString(data)) != null) return Response.Ok;
         else return Response.NotFound;
     }
 
     public Response removeCustomer(final String data) {
-        if (this.customers.remove(UUID.fromString(data)) != null) return Response.Ok;
-        else return Response.NotFound;
+        Customer customer = this.customers.remove(UUID.fromString(data));
+        if (customer == null) return Response.NotFound;
+
+        this.patients.remove(customer);
+        return Response.Ok;
     }
 
     public Response removeOrder(final String data) {
-        if (this.accounts.remove(UUID.fromString(data)) != null) return Response.Ok;
+        if (this.inventory.removeOrder(UUID.fromString(data)) != null) return Response.Ok;
         else return Response.NotFound;
     }
 
     public Response removeAutoOrder(final String data) {
-        if (this.accounts.remove(UUID.fromString(data)) != null) return Response.Ok;
+        if (this.inventory.removeAutoOrder(UUID.fromString(data)) != null) return Response.Ok;
         else return Response.NotFound;
     }
 
@@ -313,11 +544,14 @@ public class Backend {
             return Response.BadRequest;
         }
 
+        // Move the customer in the patient index when the name or birthday changes.
+        this.patients.remove(customer);
         LocalDateTime birthday = (LocalDateTime) data.get(1);
         if (birthday != null) customer.setBirthday(birthday);
 
         String name = (String) data.get(2);
         if (name != null) customer.setName(name);
+        this.patients.add(customer);
 
         LocalDateTime last_access = (LocalDateTime) data.get(3);
         if (last_access != null) customer.setLastAccess(last_access);
@@ -335,66 +569,99 @@ public class Backend {
         ;
 
         LocalDateTime shipment_date = (LocalDateTime) data.get(1);
-        if (shipment_date != null) order.setShipmentDate(shipment_date);
+        if (shipment_date != null) this.inventory.updateShipmentDate(order, shipment_date);
 
         return Response.Ok;
     }
 
     /**
-     * Input two arrays of the same size.
+     * Input two arrays of the same size. The stock items in the cart are locked, every line is
+     * checked, and then every line is taken out of stock. If any line fails nothing is taken.
      *
      * @param barcodes
      * @param quantities
+     * @return Ok if every line was purchased, BadRequest or NotFound otherwise.
      */
-    private void purchaseItems(List<UUID> barcodes, List<Integer> quantities) {
-        List<Stock> order_items = new ArrayList<Stock>();
+    private Response purchaseItems(List<UUID> barcodes, List<Integer> quantities) {
+        CheckoutEvent event = new CheckoutEvent();
+        event.begin();
+        Response response = purchaseItems(barcodes, quantities, event);
+        if (event.shouldCommit()) {
+            event.response = response.toString();
+            event.commit();
+        }
+        return response;
+    }
 
+    /**
+     * @param event Receives the size of the cart and how long its locks took.
+     */
+    private Response purchaseItems(
+            List<UUID> barcodes, List<Integer> quantities, final CheckoutEvent event) {
+        if (barcodes == null || quantities == null || barcodes.size() != quantities.size()) {
+            Log.error("Barcodes and quantities do not match.");
+            return Response.BadRequest;
+        }
+
+        LinkedHashMap<UUID, Integer> cart = new LinkedHashMap<>();
         for (int i = 0; i < barcodes.size(); i++) {
             UUID item_id = (UUID) barcodes.get(i);
-            Stock stock = this.inventory.findStock(item_id);
-
-            if (stock == null) {
-                Log.error("Invalid stock ID: " + item_id);
-                continue;
-            }
-
             int purchase_quantity = (int) quantities.get(i);
-            int stock_quantity = stock.getQuantity();
-            if (stock_quantity < purchase_quantity) {
-                Log.error("Not enough items in stock for: " + stock);
-                continue;
+            if (item_id == null || purchase_quantity <= 0) {
+                Log.error("Invalid purchase line: " + item_id + " x" + purchase_quantity);
+                return Response.BadRequest;
             }
+            cart.merge(item_id, purchase_quantity, Integer::sum);
+            event.quantity += purchase_quantity;
+        }
+        event.lines = cart.size();
+        if (cart.size() == 0) {
+            Log.error("No items were able to be purchased.");
+            return Response.BadRequest;
+        }
 
-            if (stock instanceof Drug) {
-                Drug drug = (Drug) stock;
-                if (drug.getExpirationDate().isAfter(LocalDateTime.now())) {
-                    String text = "The purchase item is expired: " + drug;
-                    Log.tui(text);
-                    sendNotification(new Notification(PermissionLevel.Cashier, text));
+        long requested = System.nanoTime();
+        int[] held = this.inventory.getStockLocks().lock(cart.keySet());
+        event.lock_wait = System.nanoTime() - requested;
+        try {
+            List<Stock> items = new ArrayList<Stock>(cart.size());
+            for (Map.Entry<UUID, Integer> line : cart.entrySet()) {
+                Stock stock = this.inventory.findStock(line.getKey());
+                if (stock == null) {
+                    Log.error("Invalid stock ID: " + line.getKey());
+                    return Response.NotFound;
                 }
+                if (stock.getQuantity() < line.getValue()) {
+                    Log.error("Not enough items in stock for: " + stock);
+                    return Response.BadRequest;
+                }
+                items.add(stock);
             }
 
-            stock.setQuantity(stock_quantity - purchase_quantity);
-            order_items.add(stock);
-        }
-
-        if (order_items.size() == 0) {
-            Log.error("No items were able to be purchased.");
-        }
+            int i = 0;
+            for (int purchase_quantity : cart.values()) {
+                Stock stock = items.get(i++);
+                if (stock instanceof Drug) {
+                    Drug drug = (Drug) stock;
+                    if (drug.getExpirationDate().isBefore(LocalDateTime.now())) {
+                        String text = "The purchase item is expired: " + drug;
+                        Log.tui(text);
+                        sendNotification(new Notification(PermissionLevel.Cashier, text));
+                    }
+                }
 
-        this.last_purchase.clear();
-        for (Stock item : order_items) {
-            int purchase_quantity = item.getQuantity();
-            int item_quantity = this.inventory.getStock().get(item.getID()).getQuantity();
-            Log.audit("Customer purchasing new item: " + item);
-            Stock inventory_item = this.inventory.getStock().get(item.getID());
-            if (inventory_item == null || item_quantity < purchase_quantity) {
-                Log.error("Not enough items in stock for: " + inventory_item);
-                continue;
+                Log.audit(
+                        Category.Inventory,
+                        "Customer purchasing new item: {} x{}",
+                        stock,
+                        purchase_quantity);
+                this.inventory.sellStock(stock, purchase_quantity);
+                stock.setQuantity(stock.getQuantity() - purchase_quantity);
             }
-            inventory_item.setQuantity(item_quantity - purchase_quantity);
-            this.last_purchase.add(inventory_item);
+        } finally {
+            this.inventory.getStockLocks().unlock(held);
         }
+        return Response.Ok;
     }
 
     @SuppressWarnings("unchecked")
@@ -411,12 +678,27 @@ public class Backend {
         List<UUID> barcodes = (List<UUID>) data.get(1);
         List<Integer> quantities = (List<Integer>) data.get(2);
 
-        purchaseItems(barcodes, quantities);
-
-        return Response.Ok;
+        return purchaseItems(barcodes, quantities);
     }
 
     public Response pickupPrescription(final List<Object> data) {
+        PrescriptionPickupEvent event = new PrescriptionPickupEvent();
+        event.begin();
+        Response response = pickupPrescription(data, event);
+        if (event.shouldCommit()) {
+            event.prescription = String.valueOf(data.get(1));
+            event.response = response.toString();
+            event.commit();
+        }
+        return response;
+    }
+
+    /**
+     * @param data
+     * @param event Receives the number of prescribed items.
+     */
+    private Response pickupPrescription(
+            final List<Object> data, final PrescriptionPickupEvent event) {
         UUID customer_id = (UUID) data.get(0);
         Customer customer = this.customers.get(customer_id);
         if (customer == null) {
@@ -448,28 +730,32 @@ public class Backend {
         if (order_prescription == null) {
             Log.error("Invalid prescription ID.");
             return Response.BadRequest;
-        } else if (order_prescription != null
-                && Duration.between(order_prescription.getLastFillTime(), LocalDateTime.now())
-                                .compareTo(order_prescription.getRefillDuration())
-                        < 0) {
-            Log.error("Prescription is not ready to be filled.");
-            return Response.BadRequest;
         }
 
-        Log.audit("Filling prescription: " + order_prescription);
-
-        List<UUID> barcodes = new ArrayList<>();
-        List<Integer> quantities = new ArrayList<>();
-        for (Stock stock : order_prescription.getItems()) {
-            barcodes.add(stock.getID());
-            quantities.add(stock.getQuantity());
-        }
+        // Two lanes must not fill the same prescription twice.
+        synchronized (order_prescription) {
+            if (order_prescription.getLastFillTime() != null
+                    && Duration.between(order_prescription.getLastFillTime(), LocalDateTime.now())
+                                    .compareTo(order_prescription.getRefillDuration())
+                            < 0) {
+                Log.error("Prescription is not ready to be filled.");
+                return Response.BadRequest;
+            }
 
-        purchaseItems(barcodes, quantities);
+            Log.audit(Category.Customers, "Filling prescription: {}", order_prescription);
+            event.items = order_prescription.getItems().size();
 
-        order_prescription.setLastFillTime(LocalDateTime.now());
+            List<UUID> barcodes = new ArrayList<>();
+            List<Integer> quantities = new ArrayList<>();
+            for (Stock stock : order_prescription.getItems()) {
+                barcodes.add(stock.getID());
+                quantities.add(stock.getQuantity());
+            }
 
-        return Response.Ok;
+            Response response = purchaseItems(barcodes, quantities);
+            if (response == Response.Ok) order_prescription.setLastFillTime(LocalDateTime.now());
+            return response;
+        }
     }
 
     /**
@@ -483,7 +769,7 @@ public class Backend {
             return Response.NotFound;
         }
         if (getLoggedIn() != null) {
-            Log.error("A user is already logged into the system.");
+            Log.error("A user is already logged into this session.");
             return Response.BadRequest;
         }
 
@@ -520,71 +806,125 @@ public class Backend {
     }
 
     private void sendNotification(Notification new_notification) {
-        if (this.getLoggedIn() == null) return;
+        if (!isAnyoneLoggedIn()) return;
         if (new_notification == null) return;
+        // Checkouts run side by side and may warn about expired items at the same time.
+        synchronized (this.notification_lock) {
+            sendNotificationLocked(new_notification);
+        }
+    }
+
+    private void sendNotificationLocked(Notification new_notification) {
         for (UUID key : this.accounts.keySet()) {
             Account account = accounts.get(key);
             if (account == null) continue;
             if (account.getPermissions().compareTo(new_notification.permission()) >= 0) {
                 if (!isUniqueNotification(account, new_notification)) continue;
                 account.addNotification(new_notification);
-                if (this.getLoggedIn().getPermissions().compareTo(new_notification.permission())
-                        >= 0) {
+                Account logged_in = this.getLoggedIn();
+                if (logged_in != null
+                        && logged_in.getPermissions().compareTo(new_notification.permission())
+                                >= 0) {
                     Log.tui("Notification:" + new_notification.notification());
                 }
             }
         }
     }
 
+    private boolean isAnyoneLoggedIn() {
+        for (Session session : this.sessions.values()) {
+            if (session.getLoggedIn() != null) return true;
+        }
+        return false;
+    }
+
+    private void updateSessions() {
+        for (Session session : this.sessions.values()) {
+            if (session.isIdle()) {
+                Log.info(Category.Server, "Session expired: {}", session);
+                closeSession(session);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
     private void updateCustomers() {
-        for (UUID id : this.customers.keySet()) {
-            if (this.customers.get(id).last_access.isBefore(Config.lastCustomerAccessTimeout())) {
-                this.customers.remove(id);
+        LocalDateTime timeout = Config.lastCustomerAccessTimeout();
+        List<UUID> expired = new ArrayList<>();
+        if (this.customers instanceof MappedTable) {
+            // Read the last access straight from the file so only expired records are decoded.
+            ((MappedTable<Customer>) this.customers)
+                    .scan(
+                            (id, record) -> {
+                                if (CustomerCodec.lastAccess(record).isBefore(timeout)) {
+                                    expired.add(id);
+                                }
+                            },
+                            customer -> {
+                                if (customer.last_access.isBefore(timeout)) {
+                                    expired.add(customer.getID());
+                                }
+                            });
+        } else {
+            for (Customer customer : this.customers.values()) {
+                if (customer.last_access.isBefore(timeout)) expired.add(customer.getID());
             }
         }
+        for (UUID id : expired) {
+            this.patients.remove(this.customers.remove(id));
+            journal(Request.RemoveCustomer, id.toString());
+        }
     }
 
-    private void discrepancyNotOrdered(UUID id) {
-        Stock stock = this.inventory.findStock(id);
-        Stock last_stock = this.inventory.getLastStock().get(id);
-        Stock last_order_item = this.inventory.getLastOrderItems().get(id);
-
-        if (stock != null && last_stock == null && last_order_item == null) {
-            String text = "Stock discrepancy detected, item was not ordered: " + stock;
-            Log.audit(text);
-            sendNotification(new Notification(PermissionLevel.PharmacyManager, text));
-        } else if (last_order_item != null) {
-            this.inventory.getLastOrderItems().remove(id);
+    private void discrepancyNotOrdered(Stock stock, StockJournal.Change change) {
+        if (stock != null && !change.wasPresent() && change.getReceived() == 0) {
+            Log.audit(
+                    Category.Inventory,
+                    "Stock discrepancy detected, item was not ordered: {}",
+                    stock);
+            sendNotification(
+                    new Notification(
+                            PermissionLevel.PharmacyManager,
+                            "Stock discrepancy detected, item was not ordered: " + stock));
         }
     }
 
-    private void discrepancyNotPurchased(UUID id) {
-        Stock stock = this.inventory.findStock(id);
-        Stock last_stock = this.inventory.getLastStock().get(id);
-        int i = this.last_purchase.indexOf(id);
-        Stock last_purchase = i == -1 ? null : this.last_purchase.get(i);
-
-        if (stock == null && last_stock != null && last_purchase == null) {
-            String text = "Stock discrepancy detected, item was not purchased: " + last_stock;
-            Log.audit(text);
-            sendNotification(new Notification(PermissionLevel.PharmacyManager, text));
-            this.inventory.getLastStock().remove(id);
-        } else if (last_purchase != null) {
-            this.last_purchase.remove(i);
+    private void discrepancyNotPurchased(Stock stock, StockJournal.Change change) {
+        if (stock == null && change.wasPresent() && change.getSold() == 0) {
+            Log.audit(
+                    Category.Inventory,
+                    "Stock discrepancy detected, item was not purchased: {}",
+                    change.getItem());
+            sendNotification(
+                    new Notification(
+                            PermissionLevel.PharmacyManager,
+                            "Stock discrepancy detected, item was not purchased: "
+                                    + change.getItem()));
         }
     }
 
+    /**
+     * Only the stock items recorded in the {@link StockJournal} since the last call are checked.
+     */
     public void updateDiscrepancies() {
-        Set<UUID> keys = new HashSet<UUID>(this.inventory.getLastStock().keySet());
-        keys.addAll(this.inventory.getStock().keySet());
-        keys.addAll(this.inventory.getLastOrderItems().keySet());
-
-        for (UUID id : keys) {
-            discrepancyNotOrdered(id);
-            discrepancyNotPurchased(id);
-            Stock current = this.inventory.findStock(id);
-            if (current != null) this.inventory.getLastStock().put(id, current);
-        }
+        this.inventory
+                .getStockJournal()
+                .reconcile(
+                        (id, change) -> {
+                            Stock stock = this.inventory.findStock(id);
+                            discrepancyNotOrdered(stock, change);
+                            discrepancyNotPurchased(stock, change);
+                            if (stock == null) return;
+                            if (change.getReceived() == 0 && change.getSold() == 0) return;
+                            if (change.getObserved() != change.getExpected()) {
+                                Log.audit(
+                                        Category.Inventory,
+                                        "Stock quantity changed by {}, expected {}: {}",
+                                        change.getObserved(),
+                                        change.getExpected(),
+                                        stock);
+                            }
+                        });
     }
 
     private void initAdmin() {
@@ -613,18 +953,21 @@ public class Backend {
         } else {
             Log.tui("Failed attempts: " + account.getFailureAttempts());
         }
+        journalLockout(account);
     }
 
     private void setLoggingIn(Account loggingIn) {
-        this.logging_in = loggingIn;
+        getSession().setLoggingIn(loggingIn);
     }
 
     private void setLoggedIn(Account logged_in) {
-        this.logged_in = logged_in;
+        getSession().setLoggedIn(logged_in);
     }
 }
 
-class Prescription {
+class Prescription implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     // Data Members
     private UUID id;
     private List<Stock> items;
@@ -636,7 +979,23 @@ class Prescription {
         this.items = items;
         this.last_fill_time = null;
         this.refill_duration = refill_duration;
-        Log.audit("Prescription created: " + this);
+        Log.audit(Category.Customers, "Prescription created: {}", this);
+    }
+
+    /**
+     * Restores a prescription that already has an ID, without auditing it.
+     *
+     * @param id
+     * @param items
+     * @param last_fill_time
+     * @param refill_duration
+     */
+    Prescription(
+            UUID id, List<Stock> items, LocalDateTime last_fill_time, Duration refill_duration) {
+        this.id = id;
+        this.items = items;
+        this.last_fill_time = last_fill_time;
+        this.refill_duration = refill_duration;
     }
 
     // Getters/Setters
@@ -687,7 +1046,9 @@ enum CustomerType {
     Patient,
 }
 
-class Customer {
+class Customer implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     protected UUID id;
     protected LocalDateTime birthday;
     protected String name;
@@ -698,7 +1059,22 @@ class Customer {
         this.birthday = birthday;
         this.name = name;
         this.last_access = LocalDateTime.now();
-        Log.audit("Customer created: " + this);
+        Log.audit(Category.Customers, "Customer created: {}", this);
+    }
+
+    /**
+     * Restores a customer that already has an ID, without auditing it.
+     *
+     * @param id
+     * @param birthday
+     * @param name
+     * @param last_access
+     */
+    Customer(UUID id, LocalDateTime birthday, String name, LocalDateTime last_access) {
+        this.id = id;
+        this.birthday = birthday;
+        this.name = name;
+        this.last_access = last_access;
     }
 
     // Getters/Setters
@@ -753,6 +1129,8 @@ class Customer {
 }
 
 class Patient extends Customer {
+    private static final long serialVersionUID = 1L;
+
     private List<Prescription> prescriptions;
     private List<Prescription> prescription_history;
 
@@ -766,13 +1144,33 @@ class Patient extends Customer {
         this.prescription_history = this.prescriptions;
     }
 
+    /**
+     * Restores a patient that already has an ID, without auditing it.
+     *
+     * @param id
+     * @param birthday
+     * @param name
+     * @param last_access
+     * @param prescriptions
+     */
+    Patient(
+            UUID id,
+            LocalDateTime birthday,
+            String name,
+            LocalDateTime last_access,
+            List<Prescription> prescriptions) {
+        super(id, birthday, name, last_access);
+        this.prescriptions = prescriptions;
+        this.prescription_history = this.prescriptions;
+    }
+
     // Getters/Setters
     public List<Prescription> getPrescriptions() {
         return prescriptions;
     }
 
     public void addPrescription(Prescription prescription) {
-        Log.audit("Prescription added to Patient " + this.getID());
+        Log.audit(Category.Customers, "Prescription added to Patient {}", this.getID());
         this.prescriptions.add(prescription);
         this.prescription_history.add(prescription);
     }
@@ -788,7 +1186,9 @@ class Patient extends Customer {
     }
 }
 
-class Purchase {
+class Purchase implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     // Data Members
     private UUID id;
     private LocalDateTime purchase_date;
@@ -799,7 +1199,7 @@ class Purchase {
         this.id = UUID.randomUUID();
         this.purchase_date = LocalDateTime.now();
         this.items = items;
-        Log.audit("Purchase created: " + this);
+        Log.audit(Category.Customers, "Purchase created: {}", this);
     }
 
     Purchase(Stock item) {
@@ -807,7 +1207,20 @@ class Purchase {
         this.purchase_date = LocalDateTime.now();
         this.items = new ArrayList<>();
         this.items.add(item);
-        Log.audit("Purchase created: " + this);
+        Log.audit(Category.Customers, "Purchase created: {}", this);
+    }
+
+    /**
+     * Restores a purchase that already has an ID, without auditing it.
+     *
+     * @param id
+     * @param purchase_date
+     * @param items
+     */
+    Purchase(UUID id, LocalDateTime purchase_date, List<Stock> items) {
+        this.id = id;
+        this.purchase_date = purchase_date;
+        this.items = items;
     }
 
     public UUID getID() {
@@ -849,9 +1262,11 @@ enum PermissionLevel {
     Admin,
 }
 
-record Notification(PermissionLevel permission, String notification) {}
+record Notification(PermissionLevel permission, String notification) implements Serializable {}
+
+class Account implements Serializable {
+    private static final long serialVersionUID = 1L;
 
-class Account {
     // Data Members
     private boolean first_login;
     private boolean locked;
@@ -886,7 +1301,7 @@ class Account {
         // Create password on first login
         this.password = null;
         this.first_login = true;
-        Log.audit("Account created: " + this);
+        Log.audit(Category.Accounts, "Account created: {}", this);
     }
 
     Account(
@@ -905,10 +1320,33 @@ class Account {
         this.password = null;
         this.first_login = true;
         if (log) {
-            Log.audit("Account created: " + this);
+            Log.audit(Category.Accounts, "Account created: {}", this);
         }
     }
 
+    /**
+     * Restores an account from its hashed login, without auditing it.
+     *
+     * @param login
+     * @param birthday
+     * @param name
+     * @param permissions
+     */
+    Account(
+            final UUID login,
+            final LocalDateTime birthday,
+            final String name,
+            final PermissionLevel permissions) {
+        this.birthday = birthday;
+        this.name = name;
+        this.login = login;
+        this.id = this.login;
+        this.permissions = permissions;
+        this.notifications = new ArrayList<Notification>();
+        this.password = null;
+        this.first_login = true;
+    }
+
     // Getters/Setters
     public UUID getID() {
         return id;
@@ -951,6 +1389,15 @@ class Account {
         this.password = UUID.nameUUIDFromBytes(password.getBytes());
     }
 
+    /**
+     * Restores an already hashed password, used when replaying the {@link Journal}.
+     *
+     * @param password
+     */
+    void setPasswordHash(final UUID password) {
+        this.password = password;
+    }
+
     public boolean isFirstLogin() {
         return first_login;
     }
@@ -991,7 +1438,7 @@ class Account {
         this.permissions = permissions;
     }
 
-    public void addNotification(Notification notification) {
+    public synchronized void addNotification(Notification notification) {
         this.notifications.add(notification);
     }
 
@@ -999,14 +1446,14 @@ class Account {
         return this.notifications;
     }
 
-    public void printNotifications() {
+    public synchronized void printNotifications() {
         Log.tui("Notifications...");
         for (int i = 0; i < this.notifications.size(); i++) {
             Log.tui("[" + i + "]: " + this.notifications.get(i).notification());
         }
     }
 
-    public void removeNotification(int index) {
+    public synchronized void removeNotification(int index) {
         if (index < 0 || index >= this.notifications.size()) {
             Log.tui("Invalid notification index.");
         } else this.notifications.remove(index);
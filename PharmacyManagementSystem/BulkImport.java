@@ -0,0 +1,232 @@
+package PharmacyManagementSystem;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * {@link BulkImport} loads the seed CSV files. Each file is mapped, cut into chunks on line
+ * boundaries and parsed on a thread pool, while the calling thread inserts finished chunks into the
+ * {@link Backend} in file order. Rows are built with the restore constructors, so there is one
+ * audit record per chunk instead of one per entity, and no stock item is rekeyed while loading.
+ *
+ * <p>A bad row is skipped and logged, and so is a chunk that fails to parse as a whole, so one bad
+ * spot does not drop the rest of the file. A failure while inserting a chunk stops the import,
+ * because part of the chunk may already be in the backend.
+ */
+public class BulkImport {
+    /** Turns the fields of one CSV row into an entity. */
+    interface RowParser<V> {
+        V parse(String[] fields, LocalTime now);
+    }
+
+    public static void accounts(final String file) {
+        Backend backend = Backend.get();
+        load(
+                file,
+                5,
+                BulkImport::account,
+                batch -> {
+                    for (Account account : batch)
+                        backend.getAccounts().put(account.getID(), account);
+                });
+    }
+
+    public static void customers(final String file) {
+        Backend backend = Backend.get();
+        load(file, 2, BulkImport::customer, backend::importCustomers);
+    }
+
+    public static void stock(final String file) {
+        InventoryControl inventory = Backend.get().inventory;
+        load(file, 3, BulkImport::stock, inventory::importStock);
+    }
+
+    public static void drugs(final String file) {
+        InventoryControl inventory = Backend.get().inventory;
+        load(file, 6, BulkImport::drug, inventory::importStock);
+    }
+
+    /**
+     * @param file
+     * @param columns Minimum number of fields in a row.
+     * @param parser
+     * @param sink Receives each parsed chunk on the calling thread, in file order.
+     * @return The number of rows imported.
+     */
+    static <V> long load(
+            final String file,
+            final int columns,
+            final RowParser<? extends V> parser,
+            final Consumer<List<V>> sink) {
+        long start = System.nanoTime();
+        long rows = 0;
+        int failed = 0;
+        Path path = Paths.get(file);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Config.importThreads());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            List<Future<List<V>>> chunks = new ArrayList<>();
+            int chunk_bytes = Config.importChunkBytes();
+            int begin = 0;
+            while (begin < mapped.limit()) {
+                int end = Math.min(mapped.limit(), begin + chunk_bytes);
+                while (end < mapped.limit() && mapped.get(end - 1) != '\n') end++;
+                final int from = begin;
+                final int to = end;
+                chunks.add(pool.submit(() -> parse(mapped, from, to, columns, parser, file)));
+                begin = end;
+            }
+
+            for (int i = 0; i < chunks.size(); i++) {
+                List<V> batch;
+                try {
+                    batch = chunks.get(i).get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    Log.error(
+                            "Skipping batch "
+                                    + (i + 1)
+                                    + "/"
+                                    + chunks.size()
+                                    + " of "
+                                    + file
+                                    + ": "
+                                    + e.getCause());
+                    continue;
+                }
+                sink.accept(batch);
+                rows += batch.size();
+                Log.audit(
+                        "Imported "
+                                + batch.size()
+                                + " rows from "
+                                + file
+                                + " (batch "
+                                + (i + 1)
+                                + "/"
+                                + chunks.size()
+                                + ")");
+            }
+        } catch (Exception e) {
+            Log.error("Bulk import error in " + file + " after " + rows + " rows: " + e);
+        } finally {
+            pool.shutdown();
+        }
+
+        if (failed > 0) Log.error(failed + " batches of " + file + " were not imported.");
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Log.info(
+                "Imported "
+                        + rows
+                        + " rows from "
+                        + file
+                        + " in "
+                        + Math.round(seconds * 1000)
+                        + "ms ("
+                        + Math.round(rows / Math.max(seconds, 1e-9))
+                        + " rows/s).");
+        return rows;
+    }
+
+    private static <V> List<V> parse(
+            final ByteBuffer mapped,
+            final int from,
+            final int to,
+            final int columns,
+            final RowParser<? extends V> parser,
+            final String file) {
+        List<V> batch = new ArrayList<>();
+        List<String> fields = new ArrayList<>(columns);
+        LocalTime now = LocalTime.now();
+        byte[] line = new byte[256];
+
+        int position = from;
+        while (position < to) {
+            int end = position;
+            while (end < to && mapped.get(end) != '\n') end++;
+            int length = end - position;
+            if (length > 0 && mapped.get(end - 1) == '\r') length--;
+            if (line.length < length) line = new byte[length * 2];
+            mapped.get(position, line, 0, length);
+            position = end + 1;
+            if (length == 0) continue;
+
+            fields.clear();
+            int field = 0;
+            for (int i = 0; i <= length; i++) {
+                if (i == length || line[i] == ',') {
+                    fields.add(new String(line, field, i - field, StandardCharsets.UTF_8));
+                    field = i + 1;
+                }
+            }
+            if (fields.size() < columns) {
+                Log.error("Skipping short row in " + file + ": " + String.join(",", fields));
+                continue;
+            }
+
+            try {
+                batch.add(parser.parse(fields.toArray(new String[0]), now));
+            } catch (Exception e) {
+                Log.error("Skipping bad row in " + file + ": " + String.join(",", fields));
+            }
+        }
+        return batch;
+    }
+
+    private static Account account(final String[] vals, final LocalTime now) {
+        LocalDateTime birthday = LocalDateTime.of(LocalDate.parse(vals[0]), now);
+        UUID login = UUID.nameUUIDFromBytes(vals[2].getBytes());
+        PermissionLevel permissions = PermissionLevel.valueOf(vals[3]);
+        return new Account(login, birthday, vals[1], permissions);
+    }
+
+    private static Customer customer(final String[] vals, final LocalTime now) {
+        LocalDateTime birthday = LocalDateTime.of(LocalDate.parse(vals[0]), now);
+        return new Customer(randomUUID(), birthday, vals[1], LocalDateTime.now());
+    }
+
+    private static Stock stock(final String[] vals, final LocalTime now) {
+        int quantity = Integer.parseInt(vals[0]);
+        double price = Double.parseDouble(vals[1]);
+        String name = vals[2];
+        UUID id = Stock.skus().identify(Stock.identity(name));
+        return new Stock(id, quantity, price, name, null);
+    }
+
+    private static Drug drug(final String[] vals, final LocalTime now) {
+        LocalDateTime expiration_date = LocalDateTime.of(LocalDate.parse(vals[0]), now);
+        int quantity = Integer.parseInt(vals[1]);
+        double price = Double.parseDouble(vals[2]);
+        String name = vals[3];
+        boolean is_controlled = Boolean.parseBoolean(vals[4]);
+        String drug_name = vals[5];
+        UUID id = Stock.skus().identify(Drug.identity(name, drug_name, expiration_date));
+        return new Drug(id, quantity, price, name, null, is_controlled, drug_name, expiration_date);
+    }
+
+    /** A version 4 UUID that does not contend on the shared {@code SecureRandom}. */
+    private static UUID randomUUID() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long msb = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long lsb = (random.nextLong() & ~(0xC000L << 48)) | (0x8000L << 48);
+        return new UUID(msb, lsb);
+    }
+}
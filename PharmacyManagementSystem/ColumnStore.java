@@ -0,0 +1,301 @@
+package PharmacyManagementSystem;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * {@link ColumnStore} is an inventory that keeps stock items as columns indexed by their SKU from
+ * the {@link SkuRegistry}, instead of one object per item. Quantities, prices in cents, expiration
+ * epoch days and flags are primitive columns, which can live off the heap. Names are arrays of
+ * strings and the few discounts are kept in a map.
+ *
+ * <p>{@link #get(Object)} returns a {@link Stock} or {@link Drug} view of a row: its getters read
+ * the columns and its setters write them. A view is created per lookup, so views of the same row
+ * are not the same object, and {@link Stock#clone()} returns a detached copy. Expiration dates are
+ * kept by day, so a view reports midnight of that day.
+ *
+ * <p>Checkouts update the quantities of different rows concurrently. Adding and removing rows grows
+ * the columns, so it needs the exclusive side of the backend lock, as every other mutation.
+ */
+class ColumnStore extends AbstractMap<UUID, Stock> {
+    private static final byte PRESENT = 1;
+    private static final byte DRUG = 2;
+    private static final byte CONTROLLED = 4;
+    private static final byte DISCOUNTED = 8;
+    private static final int NO_EXPIRATION = Integer.MIN_VALUE;
+
+    private final SkuRegistry skus;
+    private final boolean off_heap;
+    private final HashMap<Integer, Discount> discounts;
+    private ByteBuffer flags;
+    private IntBuffer quantities;
+    private LongBuffer prices;
+    private IntBuffer expirations;
+    private String[] names;
+    private String[] drug_names;
+    private int capacity;
+    private int size;
+
+    /**
+     * @param skus Registry that gives every ID its row.
+     * @param off_heap Whether the primitive columns are direct buffers.
+     */
+    ColumnStore(final SkuRegistry skus, final boolean off_heap) {
+        this.skus = skus;
+        this.off_heap = off_heap;
+        this.discounts = new HashMap<>();
+        this.capacity = 0;
+        grow(1024);
+    }
+
+    // Map API
+    @Override
+    public Stock get(final Object key) {
+        if (!(key instanceof UUID)) return null;
+        int sku = this.skus.sku((UUID) key);
+        return isPresent(sku) ? view((UUID) key, sku) : null;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return key instanceof UUID && isPresent(this.skus.sku((UUID) key));
+    }
+
+    /**
+     * Copies {@code item} into its row. The item is not kept, later changes to it are not seen.
+     *
+     * @return A detached copy of the row that was replaced, or null.
+     */
+    @Override
+    public Stock put(final UUID id, final Stock item) {
+        int sku = this.skus.register(id);
+        if (item.store == this && item.sku == sku) return null;
+        Stock previous = isPresent(sku) ? view(id, sku).clone() : null;
+        if (sku >= this.capacity) grow(Math.max(sku + 1, this.capacity * 2));
+
+        byte flag = PRESENT;
+        int expiration = NO_EXPIRATION;
+        String drug_name = null;
+        if (item instanceof Drug) {
+            Drug drug = (Drug) item;
+            flag |= DRUG;
+            if (drug.getIsControlled()) flag |= CONTROLLED;
+            drug_name = drug.getDrugName();
+            expiration = epochDay(drug.getExpirationDate());
+        }
+        this.flags.put(sku, flag);
+        this.quantities.put(sku, item.getQuantity());
+        this.prices.put(sku, cents(item.basePrice()));
+        this.expirations.put(sku, expiration);
+        this.names[sku] = item.getName();
+        this.drug_names[sku] = drug_name;
+        setDiscount(sku, item.getDiscount());
+
+        if (previous == null) this.size++;
+        return previous;
+    }
+
+    /**
+     * @return A detached copy of the removed row, or null.
+     */
+    @Override
+    public Stock remove(final Object key) {
+        if (!(key instanceof UUID)) return null;
+        int sku = this.skus.sku((UUID) key);
+        if (!isPresent(sku)) return null;
+
+        Stock removed = view((UUID) key, sku).clone();
+        this.flags.put(sku, (byte) 0);
+        this.names[sku] = null;
+        this.drug_names[sku] = null;
+        this.discounts.remove(sku);
+        this.size--;
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public void clear() {
+        this.discounts.clear();
+        this.capacity = 0;
+        this.size = 0;
+        grow(1024);
+    }
+
+    @Override
+    public Set<Map.Entry<UUID, Stock>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return ColumnStore.this.size;
+            }
+
+            @Override
+            public Iterator<Map.Entry<UUID, Stock>> iterator() {
+                return new Iterator<>() {
+                    private int next = advance(SkuRegistry.NONE + 1);
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.next < ColumnStore.this.capacity;
+                    }
+
+                    @Override
+                    public Map.Entry<UUID, Stock> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        int sku = this.next;
+                        this.next = advance(sku + 1);
+                        UUID id = ColumnStore.this.skus.id(sku);
+                        return new AbstractMap.SimpleImmutableEntry<>(id, view(id, sku));
+                    }
+                };
+            }
+        };
+    }
+
+    // Column API for views
+    int quantity(final int sku) {
+        return this.quantities.get(sku);
+    }
+
+    void setQuantity(final int sku, final int quantity) {
+        this.quantities.put(sku, quantity);
+    }
+
+    double price(final int sku) {
+        return this.prices.get(sku) / 100.0;
+    }
+
+    void setPrice(final int sku, final double price) {
+        this.prices.put(sku, cents(price));
+    }
+
+    Discount discount(final int sku) {
+        return (this.flags.get(sku) & DISCOUNTED) == 0 ? null : this.discounts.get(sku);
+    }
+
+    void setDiscount(final int sku, final Discount discount) {
+        byte flag = this.flags.get(sku);
+        if (discount == null) {
+            this.flags.put(sku, (byte) (flag & ~DISCOUNTED));
+            this.discounts.remove(sku);
+        } else {
+            this.flags.put(sku, (byte) (flag | DISCOUNTED));
+            this.discounts.put(sku, discount);
+        }
+    }
+
+    String name(final int sku) {
+        return this.names[sku];
+    }
+
+    void setName(final int sku, final String name) {
+        this.names[sku] = name;
+    }
+
+    boolean isControlled(final int sku) {
+        return (this.flags.get(sku) & CONTROLLED) != 0;
+    }
+
+    void setControlled(final int sku, final boolean is_controlled) {
+        byte flag = this.flags.get(sku);
+        this.flags.put(sku, (byte) (is_controlled ? flag | CONTROLLED : flag & ~CONTROLLED));
+    }
+
+    String drugName(final int sku) {
+        return this.drug_names[sku];
+    }
+
+    void setDrugName(final int sku, final String drug_name) {
+        this.drug_names[sku] = drug_name;
+    }
+
+    LocalDateTime expirationDate(final int sku) {
+        int day = this.expirations.get(sku);
+        return day == NO_EXPIRATION ? null : LocalDate.ofEpochDay(day).atStartOfDay();
+    }
+
+    void setExpirationDate(final int sku, final LocalDateTime expiration_date) {
+        this.expirations.put(sku, epochDay(expiration_date));
+    }
+
+    private boolean isPresent(final int sku) {
+        return sku > SkuRegistry.NONE
+                && sku < this.capacity
+                && (this.flags.get(sku) & PRESENT) != 0;
+    }
+
+    private Stock view(final UUID id, final int sku) {
+        Stock view =
+                (this.flags.get(sku) & DRUG) != 0
+                        ? new Drug(id, 0, 0, null, null, false, null, null)
+                        : new Stock(id, 0, 0, null, null);
+        view.store = this;
+        view.sku = sku;
+        return view;
+    }
+
+    private int advance(int sku) {
+        while (sku < this.capacity && (this.flags.get(sku) & PRESENT) == 0) sku++;
+        return sku;
+    }
+
+    /** Copies every column into new ones of {@code capacity} rows, zero rows on a clear. */
+    private void grow(final int capacity) {
+        int rows = Math.min(this.capacity, capacity);
+        ByteBuffer flags = allocate(capacity);
+        IntBuffer quantities = allocate(capacity * Integer.BYTES).asIntBuffer();
+        LongBuffer prices = allocate(capacity * Long.BYTES).asLongBuffer();
+        IntBuffer expirations = allocate(capacity * Integer.BYTES).asIntBuffer();
+        for (int i = 0; i < rows; i++) {
+            flags.put(i, this.flags.get(i));
+            quantities.put(i, this.quantities.get(i));
+            prices.put(i, this.prices.get(i));
+            expirations.put(i, this.expirations.get(i));
+        }
+
+        this.flags = flags;
+        this.quantities = quantities;
+        this.prices = prices;
+        this.expirations = expirations;
+        this.names =
+                this.names == null ? new String[capacity] : Arrays.copyOf(this.names, capacity);
+        this.drug_names =
+                this.drug_names == null
+                        ? new String[capacity]
+                        : Arrays.copyOf(this.drug_names, capacity);
+        if (rows == 0) {
+            Arrays.fill(this.names, null);
+            Arrays.fill(this.drug_names, null);
+        }
+        this.capacity = capacity;
+    }
+
+    private ByteBuffer allocate(final int bytes) {
+        return this.off_heap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+    }
+
+    private static long cents(final double price) {
+        return Math.round(price * 100);
+    }
+
+    private static int epochDay(final LocalDateTime date) {
+        return date == null ? NO_EXPIRATION : (int) date.toLocalDate().toEpochDay();
+    }
+}
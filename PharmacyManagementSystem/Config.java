@@ -15,6 +15,9 @@ public class Config {
     static LocalDateTime lastCustomerAccessTimeout() {
         return LocalDateTime.now().minusYears(5);
     }
+    static LocalDateTime sessionIdleTimeout() {
+        return LocalDateTime.now().minusMinutes(15);
+    }
     static LocalDateTime orderDeliveryTime() {
         return LocalDateTime.now().plusMinutes(2);
     }
@@ -24,4 +27,112 @@ public class Config {
     static int minDrugQuantity() {
         return 120;
     }
+    static String journalDirectory() {
+        return "data";
+    }
+    static long journalFlushMillis() {
+        return 5;
+    }
+    static int checkpointEntries() {
+        return 1000;
+    }
+    static long checkpointUpdateMillis() {
+        return 1_000;
+    }
+    static long sessionUpdateMillis() {
+        return 60_000;
+    }
+    static long autoOrderUpdateMillis() {
+        return 1_000;
+    }
+    static long expiryUpdateMillis() {
+        return 60_000;
+    }
+    static long customerUpdateMillis() {
+        return 3_600_000;
+    }
+    static long noQuantityUpdateMillis() {
+        return 1_000;
+    }
+    static long discrepancyUpdateMillis() {
+        return 5_000;
+    }
+    static long metricsDumpMillis() {
+        return 60_000;
+    }
+    static Level logLevel(Category category) {
+        return Level.valueOf(System.getProperty("log." + category, "Trace"));
+    }
+    static int logBufferSize() {
+        return 1 << 14;
+    }
+    static int logBatchSize() {
+        return 512;
+    }
+    static long logFlushMillis() {
+        return 10;
+    }
+    static long logSyncMillis() {
+        return 1_000;
+    }
+    static boolean logDropWhenFull() {
+        return false;
+    }
+    static String logDirectory() {
+        return "logs";
+    }
+    static long logMaxFileBytes() {
+        return 16 << 20;
+    }
+    static int logRetentionFiles() {
+        return 90;
+    }
+    static String auditDirectory() {
+        return "audit";
+    }
+    static long auditSegmentBytes() {
+        return 64 << 20;
+    }
+    static int auditIndexInterval() {
+        return 256;
+    }
+    static int auditQueryLimit() {
+        return 1000;
+    }
+    static int searchResults() {
+        return 20;
+    }
+    static boolean inventoryColumns() {
+        return Boolean.getBoolean("inventory.columns");
+    }
+    static boolean inventoryOffHeap() {
+        return Boolean.getBoolean("inventory.offheap");
+    }
+    static int stockLockStripes() {
+        return 64;
+    }
+    static boolean serverEnabled() {
+        return Boolean.parseBoolean(System.getProperty("server.enabled", "true"));
+    }
+    static String serverAddress() {
+        return System.getProperty("server.address", "127.0.0.1");
+    }
+    static int serverPort() {
+        return 7070;
+    }
+    static int serverThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+    static int serverMaxFrameBytes() {
+        return 16 << 20;
+    }
+    static int serverMaxQueuedFrames() {
+        return 64;
+    }
+    static int importThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+    static int importChunkBytes() {
+        return 64 << 20;
+    }
 }
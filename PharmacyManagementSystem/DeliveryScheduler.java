@@ -0,0 +1,206 @@
+package PharmacyManagementSystem;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DeliveryScheduler} queues open orders by shipment date and wakes a timer thread when the
+ * earliest one comes due, instead of scanning every order on each request. Rescheduling an order
+ * pushes a new queue entry with a higher version, and stale entries are skipped when they reach the
+ * head of the queue.
+ *
+ * <p>Nothing fires before {@link #start()}, so recovery can restore and replay orders without a
+ * delivery landing in between.
+ */
+class DeliveryScheduler {
+    private record Entry(LocalDateTime due, UUID order, long version) {}
+
+    private final PriorityQueue<Entry> queue;
+    private final HashMap<UUID, Long> versions;
+    private final Runnable on_due;
+    private final ScheduledExecutorService timer;
+    private ScheduledFuture<?> wake;
+    private LocalDateTime wake_at;
+    private long version;
+    private boolean started;
+
+    private long delivered;
+    private Duration last_lag;
+    private Duration max_lag;
+    private Duration total_lag;
+
+    /**
+     * @param on_due Run on the timer thread whenever an order comes due. It is expected to call
+     *     {@link #due(LocalDateTime)}.
+     */
+    DeliveryScheduler(final Runnable on_due) {
+        this.queue = new PriorityQueue<>((a, b) -> a.due().compareTo(b.due()));
+        this.versions = new HashMap<>();
+        this.on_due = on_due;
+        this.timer =
+                Executors.newSingleThreadScheduledExecutor(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "delivery-scheduler");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        this.last_lag = Duration.ZERO;
+        this.max_lag = Duration.ZERO;
+        this.total_lag = Duration.ZERO;
+    }
+
+    /**
+     * Queues an order, or moves it if it is already queued.
+     *
+     * @param order
+     */
+    synchronized void schedule(final Order order) {
+        this.version++;
+        this.versions.put(order.getID(), this.version);
+        this.queue.add(new Entry(order.getShipmentDate(), order.getID(), this.version));
+        arm();
+    }
+
+    /**
+     * @param order_id
+     */
+    synchronized void cancel(final UUID order_id) {
+        this.versions.remove(order_id);
+    }
+
+    /** Starts firing due orders, including any that came due while stopped. */
+    synchronized void start() {
+        this.started = true;
+        arm();
+    }
+
+    /** Stops firing, orders stay queued until the next {@link #start()}. */
+    synchronized void stop() {
+        this.started = false;
+        if (this.wake != null) this.wake.cancel(false);
+        this.wake = null;
+        this.wake_at = null;
+    }
+
+    synchronized void clear() {
+        this.queue.clear();
+        this.versions.clear();
+        arm();
+    }
+
+    /**
+     * Dequeues every order whose shipment date has passed.
+     *
+     * @param now
+     * @return The IDs of the due orders, earliest first.
+     */
+    synchronized List<UUID> due(final LocalDateTime now) {
+        List<UUID> due = new ArrayList<>();
+        while (!this.queue.isEmpty() && !this.queue.peek().due().isAfter(now)) {
+            Entry entry = this.queue.poll();
+            Long current = this.versions.get(entry.order());
+            if (current == null || current != entry.version()) continue;
+            this.versions.remove(entry.order());
+            due.add(entry.order());
+
+            Duration lag = Duration.between(entry.due(), now);
+            this.delivered++;
+            this.last_lag = lag;
+            this.total_lag = this.total_lag.plus(lag);
+            if (lag.compareTo(this.max_lag) > 0) this.max_lag = lag;
+        }
+        arm();
+        return due;
+    }
+
+    /**
+     * @return The number of orders waiting for delivery.
+     */
+    synchronized int depth() {
+        return this.versions.size();
+    }
+
+    /**
+     * @return How late the most recent delivery fired after its shipment date.
+     */
+    synchronized Duration lastLag() {
+        return this.last_lag;
+    }
+
+    synchronized Duration maxLag() {
+        return this.max_lag;
+    }
+
+    synchronized Duration averageLag() {
+        return this.delivered == 0 ? Duration.ZERO : this.total_lag.dividedBy(this.delivered);
+    }
+
+    synchronized long delivered() {
+        return this.delivered;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "[Queued: "
+                + depth()
+                + ", Delivered: "
+                + this.delivered
+                + ", Last lag: "
+                + this.last_lag
+                + ", Average lag: "
+                + averageLag()
+                + ", Max lag: "
+                + this.max_lag
+                + "]";
+    }
+
+    /** Points the timer at the earliest live entry, dropping stale entries on the way. */
+    private void arm() {
+        while (!this.queue.isEmpty()) {
+            Entry head = this.queue.peek();
+            Long current = this.versions.get(head.order());
+            if (current != null && current == head.version()) break;
+            this.queue.poll();
+        }
+
+        if (this.queue.isEmpty()) {
+            if (this.wake != null) this.wake.cancel(false);
+            this.wake = null;
+            this.wake_at = null;
+            return;
+        }
+        if (!this.started) return;
+
+        LocalDateTime due = this.queue.peek().due();
+        if (this.wake != null && !this.wake.isDone() && !due.isBefore(this.wake_at)) return;
+        if (this.wake != null) this.wake.cancel(false);
+
+        long delay = Math.max(0, Duration.between(LocalDateTime.now(), due).toMillis());
+        this.wake_at = due;
+        this.wake = this.timer.schedule(this::fire, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void fire() {
+        synchronized (this) {
+            this.wake = null;
+            this.wake_at = null;
+        }
+        try {
+            this.on_due.run();
+        } catch (Exception e) {
+            Log.error("Exception in delivery scheduler: " + e);
+        }
+        synchronized (this) {
+            arm();
+        }
+    }
+}
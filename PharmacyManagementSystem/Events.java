@@ -0,0 +1,110 @@
+package PharmacyManagementSystem;
+
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Java Flight Recorder events for the places a register can stall. While no recording is running
+// an event costs a field check. pharmacy.jfc in the project root enables them with thresholds.
+
+@Name("PharmacyManagementSystem.MaintenanceJob")
+@Label("Maintenance Job")
+@jdk.jfr.Category({"Pharmacy Management System", "Backend"})
+@Description("One run of a backend maintenance job, while holding the backend write lock.")
+@StackTrace(false)
+class MaintenanceJobEvent extends Event {
+    @Label("Job")
+    String job;
+
+    @Label("Lock Wait")
+    @Description("Time spent waiting for the backend write lock before the run.")
+    @Timespan(Timespan.NANOSECONDS)
+    long lock_wait;
+
+    @Label("Failed")
+    boolean failed;
+}
+
+@Name("PharmacyManagementSystem.Checkout")
+@Label("Checkout")
+@jdk.jfr.Category({"Pharmacy Management System", "Backend"})
+@Description("Taking the lines of a cart out of stock, for a purchase or a prescription.")
+class CheckoutEvent extends Event {
+    @Label("Lines")
+    int lines;
+
+    @Label("Quantity")
+    @Description("Total number of units over every line.")
+    long quantity;
+
+    @Label("Lock Wait")
+    @Description("Time spent waiting for the stock item locks of the cart.")
+    @Timespan(Timespan.NANOSECONDS)
+    long lock_wait;
+
+    @Label("Response")
+    String response;
+}
+
+@Name("PharmacyManagementSystem.PrescriptionPickup")
+@Label("Prescription Pickup")
+@jdk.jfr.Category({"Pharmacy Management System", "Backend"})
+@Description("Filling a prescription of a patient, including its checkout.")
+class PrescriptionPickupEvent extends Event {
+    @Label("Prescription")
+    String prescription;
+
+    @Label("Items")
+    int items;
+
+    @Label("Response")
+    String response;
+}
+
+@Name("PharmacyManagementSystem.Order")
+@Label("Order")
+@jdk.jfr.Category({"Pharmacy Management System", "Inventory"})
+@Description("Creating an order from the auto orders, or delivering an order into stock.")
+class OrderEvent extends Event {
+    @Label("Action")
+    String action;
+
+    @Label("Order")
+    String order;
+
+    @Label("Items")
+    int items;
+}
+
+@Name("PharmacyManagementSystem.LogWrite")
+@Label("Log Write")
+@jdk.jfr.Category({"Pharmacy Management System", "Log"})
+@Description("One batch of log records written to the console, activity log and audit log.")
+@StackTrace(false)
+class LogWriteEvent extends Event {
+    @Label("Records")
+    int records;
+
+    @Label("Characters")
+    @Description("Characters appended to the activity log file.")
+    long characters;
+}
+
+@Name("PharmacyManagementSystem.LogSync")
+@Label("Log Sync")
+@jdk.jfr.Category({"Pharmacy Management System", "Log"})
+@Description("Forcing the activity log and audit log to the disk.")
+@StackTrace(false)
+class LogSyncEvent extends Event {}
+
+@Name("PharmacyManagementSystem.LogBufferFull")
+@Label("Log Buffer Full")
+@jdk.jfr.Category({"Pharmacy Management System", "Log"})
+@Description("A thread waited for room in the log buffer, or dropped its record.")
+class LogBufferFullEvent extends Event {
+    @Label("Dropped")
+    boolean dropped;
+}
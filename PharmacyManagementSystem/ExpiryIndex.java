@@ -0,0 +1,110 @@
+package PharmacyManagementSystem;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link ExpiryIndex} keeps the drugs in stock ordered by expiration date. Each {@link
+ * #check(LocalDateTime, LocalDateTime, BiConsumer)} remembers how far it looked, so the next one
+ * only visits drugs that crossed the expired or expiring boundary since then, plus drugs that were
+ * added behind a boundary.
+ */
+class ExpiryIndex {
+    private static final UUID MAX_ID = new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    private record Entry(LocalDateTime date, UUID id) implements Comparable<Entry> {
+        @Override
+        public int compareTo(final Entry other) {
+            int order = this.date.compareTo(other.date);
+            return order != 0 ? order : this.id.compareTo(other.id);
+        }
+    }
+
+    private final TreeSet<Entry> entries;
+    private final HashMap<UUID, Entry> by_id;
+    private final Set<UUID> late;
+    private LocalDateTime expired_checked;
+    private LocalDateTime expiring_checked;
+
+    ExpiryIndex() {
+        this.entries = new TreeSet<>();
+        this.by_id = new HashMap<>();
+        this.late = new HashSet<>();
+        this.expired_checked = LocalDateTime.MIN;
+        this.expiring_checked = LocalDateTime.MIN;
+    }
+
+    /**
+     * @param id
+     * @param date
+     */
+    void add(final UUID id, final LocalDateTime date) {
+        remove(id);
+        Entry entry = new Entry(date, id);
+        this.entries.add(entry);
+        this.by_id.put(id, entry);
+        if (!date.isAfter(this.expiring_checked)) this.late.add(id);
+    }
+
+    /**
+     * @param id
+     */
+    void remove(final UUID id) {
+        Entry entry = this.by_id.remove(id);
+        if (entry == null) return;
+        this.entries.remove(entry);
+        this.late.remove(id);
+    }
+
+    void clear() {
+        this.entries.clear();
+        this.by_id.clear();
+        this.late.clear();
+        this.expired_checked = LocalDateTime.MIN;
+        this.expiring_checked = LocalDateTime.MIN;
+    }
+
+    /**
+     * Reports every drug that expired, or started expiring soon, since the previous check.
+     *
+     * @param now
+     * @param expiring Drugs expiring before this time get a warning.
+     * @param visitor Called with the drug ID and true if it is expired, false if expiring.
+     */
+    void check(
+            final LocalDateTime now,
+            final LocalDateTime expiring,
+            final BiConsumer<UUID, Boolean> visitor) {
+        Set<UUID> reported = new HashSet<>();
+
+        for (Entry entry : range(this.expired_checked, now)) {
+            reported.add(entry.id());
+            visitor.accept(entry.id(), true);
+        }
+        for (Entry entry : range(this.expiring_checked, expiring)) {
+            if (entry.date().isAfter(now) && reported.add(entry.id())) {
+                visitor.accept(entry.id(), false);
+            }
+        }
+        for (UUID id : this.late) {
+            Entry entry = this.by_id.get(id);
+            if (entry == null || !reported.add(id)) continue;
+            if (!entry.date().isAfter(now)) visitor.accept(id, true);
+            else if (!entry.date().isAfter(expiring)) visitor.accept(id, false);
+        }
+
+        this.late.clear();
+        if (now.isAfter(this.expired_checked)) this.expired_checked = now;
+        if (expiring.isAfter(this.expiring_checked)) this.expiring_checked = expiring;
+    }
+
+    private Set<Entry> range(final LocalDateTime after, final LocalDateTime until) {
+        if (!until.isAfter(after)) return Set.of();
+        return this.entries.subSet(new Entry(after, MAX_ID), false, new Entry(until, MAX_ID), true);
+    }
+}
@@ -1,109 +1,178 @@
 package PharmacyManagementSystem;
 
+import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /** {@link InventoryControl} */
 public class InventoryControl {
-    private HashMap<UUID, Stock> stock;
-    private HashMap<UUID, Stock> last_stock;
-    private HashMap<UUID, Order> orders;
-    private HashMap<UUID, Stock> last_order_items;
+    private Map<UUID, Stock> stock;
+    private Map<UUID, Order> orders;
     private List<AutoOrder> auto_orders;
+    private ExpiryIndex expiry;
+    private Set<UUID> low_quantity;
+    private DeliveryScheduler deliveries;
+    private HashMap<UUID, Set<UUID>> ordered_stock;
+    private HashMap<UUID, List<AutoOrder>> reorder_watchers;
+    private Set<UUID> reorder_pending;
+    private StockJournal stock_journal;
+    private StripedLocks stock_locks;
+    private SkuRegistry skus;
+    private SearchIndex search;
 
     public InventoryControl() {
-        this.stock = new HashMap<UUID, Stock>();
-        this.last_stock = new HashMap<UUID, Stock>();
-        this.orders = new HashMap<UUID, Order>();
-        this.last_order_items = new HashMap<UUID, Stock>();
+        this.skus = new SkuRegistry();
+        this.search = new SearchIndex();
+        this.stock =
+                Config.inventoryColumns()
+                        ? new ColumnStore(this.skus, Config.inventoryOffHeap())
+                        : new UUIDMap<Stock>();
+        this.expiry = new ExpiryIndex();
+        this.low_quantity = ConcurrentHashMap.newKeySet();
+        this.deliveries = new DeliveryScheduler(this::deliverDue);
+        this.ordered_stock = new HashMap<UUID, Set<UUID>>();
+        this.reorder_watchers = new HashMap<UUID, List<AutoOrder>>();
+        this.reorder_pending = ConcurrentHashMap.newKeySet();
+        this.stock_journal = new StockJournal();
+        this.stock_locks = new StripedLocks(Config.stockLockStripes());
+        this.orders = new UUIDMap<Order>();
         this.auto_orders = new ArrayList<>();
         Log.auditAnonymous("Inventory Control created.");
     }
 
     // Backend Updates API
+    @SuppressWarnings("unchecked")
     public void updateNoQuantity() {
         List<UUID> removals = new ArrayList<>();
-        for (final UUID id : this.stock.keySet()) {
-            if (stock.get(id).getQuantity() == 0) {
-                removals.add(id);
+        if (this.stock instanceof MappedTable) {
+            // Read the quantity straight from the file so records stay undecoded.
+            ((MappedTable<Stock>) this.stock)
+                    .scan(
+                            (id, record) -> {
+                                if (StockCodec.quantity(record) == 0) removals.add(id);
+                            },
+                            item -> {
+                                if (item.getQuantity() == 0) removals.add(item.getID());
+                            });
+        } else {
+            for (final UUID id : this.stock.keySet()) {
+                if (stock.get(id).getQuantity() == 0) {
+                    removals.add(id);
+                }
             }
         }
         for (UUID id : removals) {
-            this.stock.remove(id);
+            if (removeStock(id) != null) Backend.get().journal(Request.RemoveStock, id.toString());
         }
     }
 
-    /** */
+    /**
+     * Evaluates the auto orders watching the stock items that fell below a minimum quantity, lost
+     * their open order, or were removed since the last call. Nothing else is visited.
+     */
     public void updateAutoOrders() {
-        for (final AutoOrder auto_order : this.auto_orders) {
-            List<Stock> new_order_items = new ArrayList<>();
-            for (final Stock auto_stock : auto_order.getOrder().getOrderItems()) {
-                UUID key = auto_stock.getID();
-                MinStock order_stock = auto_order.getQuantities().get(key);
+        if (this.reorder_pending.isEmpty()) return;
 
-                final Stock inventory_stock = this.stock.get(key);
-                int quantity = 0;
-                if (inventory_stock != null) quantity = inventory_stock.getQuantity();
-                if (quantity < order_stock.minimum_quantity() && !isStockOrdered(auto_stock)) {
-                    Stock order_item = auto_stock.clone();
+        LinkedHashMap<AutoOrder, List<Stock>> reorders = new LinkedHashMap<>();
+        for (final UUID key : this.reorder_pending) {
+            final Stock inventory_stock = this.stock.get(key);
+            int quantity = 0;
+            if (inventory_stock != null) quantity = inventory_stock.getQuantity();
 
-                    new_order_items.add(order_item);
+            for (final AutoOrder auto_order : this.reorder_watchers.get(key)) {
+                MinStock order_stock = auto_order.getQuantities().get(key);
+                if (order_stock == null || quantity >= order_stock.minimum_quantity()) continue;
+                for (final Stock auto_stock : auto_order.getOrder().getOrderItems()) {
+                    if (!auto_stock.getID().equals(key)) continue;
+                    reorders.computeIfAbsent(auto_order, order -> new ArrayList<>())
+                            .add(auto_stock);
                 }
             }
+        }
+        this.reorder_pending.clear();
+
+        for (final List<Stock> auto_stock : reorders.values()) {
+            List<Stock> new_order_items = new ArrayList<>();
+            for (final Stock item : auto_stock) {
+                if (!isStockOrdered(item)) new_order_items.add(item.clone());
+            }
             if (new_order_items.size() > 0) {
                 final Order order = new Order(new_order_items);
-                Log.audit("Creating order from auto orders: " + order);
+                Log.audit(Category.Orders, "Creating order from auto orders: {}", order);
                 createUniqueOrder(order);
             }
         }
     }
 
-    /** */
+    /** Delivers the orders the {@link DeliveryScheduler} reports as due. */
     public void updateDeliveries() {
-        List<UUID> removals = new ArrayList<>();
-        for (final UUID key : this.orders.keySet()) {
-            final Order order = this.orders.get(key);
-            if (order.getShipmentDate().isBefore(LocalDateTime.now())) {
-                deliverOrder(order);
-                removals.add(key);
-            }
-        }
-        for (UUID key : removals) {
-            this.orders.remove(key);
+        for (final UUID key : this.deliveries.due(LocalDateTime.now())) {
+            if (deliver(key)) Backend.get().journalDelivery(key);
         }
     }
 
     /**
+     * Adds the items of an open order to stock and closes the order.
+     *
+     * @param id
+     * @return False if there is no such order.
+     */
+    public boolean deliver(final UUID id) {
+        final Order order = this.orders.get(id);
+        if (order == null) return false;
+        deliverOrder(order);
+        removeOrder(id);
+        return true;
+    }
+
+    /**
+     * Only drugs that crossed an expiration boundary, or whose quantity changed, since the last
+     * call are checked.
+     *
      * @return Returns a notification to be sent.
      */
     public List<Notification> updateExpired() {
         // TODO: Update expired prescriptions, stock items, and discounts
         List<Notification> notifications = new ArrayList<>();
-        for (UUID key : this.getStock().keySet()) {
-            Stock stock = this.getStock().get(key);
-            if (stock instanceof Drug) {
-                Drug drug = (Drug) stock;
-                if (drug.getExpirationDate().isBefore(LocalDateTime.now())) {
-                    notifications.add(
-                            new Notification(
-                                    PermissionLevel.PharmacyManager, "Drug is expired: " + drug));
-                } else if (drug.getExpirationDate().isBefore(Config.expiredNotificationTime())) {
-                    notifications.add(
-                            new Notification(
-                                    PermissionLevel.PharmacyManager,
-                                    "Drug expires in less than 30 days: " + drug));
-                }
-                if (drug.getQuantity() < Config.minDrugQuantity()) {
-                    notifications.add(
-                            new Notification(
-                                    PermissionLevel.PharmacyManager,
-                                    "Drug has less than 120 items remaining: " + drug));
-                }
+        this.expiry.check(
+                LocalDateTime.now(),
+                Config.expiredNotificationTime(),
+                (id, expired) -> {
+                    Stock drug = this.stock.get(id);
+                    if (drug == null) return;
+                    if (expired) {
+                        notifications.add(
+                                new Notification(
+                                        PermissionLevel.PharmacyManager,
+                                        "Drug is expired: " + drug));
+                    } else {
+                        notifications.add(
+                                new Notification(
+                                        PermissionLevel.PharmacyManager,
+                                        "Drug expires in less than 30 days: " + drug));
+                    }
+                });
+
+        for (UUID id : this.low_quantity) {
+            Stock drug = this.stock.get(id);
+            if (drug instanceof Drug && drug.getQuantity() < Config.minDrugQuantity()) {
+                notifications.add(
+                        new Notification(
+                                PermissionLevel.PharmacyManager,
+                                "Drug has less than 120 items remaining: " + drug));
             }
         }
+        this.low_quantity.clear();
+
         return notifications.size() == 0 ? null : notifications;
     }
 
@@ -111,37 +180,92 @@ public class InventoryControl {
         return this.stock.get(id);
     }
 
+    /**
+     * @param sku
+     * @return The stock item with that SKU, or null.
+     */
+    public Stock findStock(final int sku) {
+        UUID id = this.skus.id(sku);
+        return id == null ? null : this.stock.get(id);
+    }
+
+    /**
+     * @param query Part of a name or drug name, such as "ibupro".
+     * @return The best {@link Config#searchResults()} matches, best first.
+     */
+    public List<Stock> searchStock(final String query) {
+        List<Stock> matches = new ArrayList<>();
+        for (int sku : this.search.search(query, Config.searchResults())) {
+            Stock item = findStock(sku);
+            if (item != null) matches.add(item);
+        }
+        return matches;
+    }
+
     // Getters/Setters
-    public HashMap<UUID, Stock> getStock() {
+    public Map<UUID, Stock> getStock() {
         return stock;
     }
 
-    public void setStock(final HashMap<UUID, Stock> inventory) {
+    /**
+     * @param inventory Copied into a {@link ColumnStore} when {@link Config#inventoryColumns()} is
+     *     set and it is not one already.
+     */
+    @SuppressWarnings("unchecked")
+    public void setStock(Map<UUID, Stock> inventory) {
+        if (Config.inventoryColumns() && !(inventory instanceof ColumnStore)) {
+            ColumnStore columns = new ColumnStore(this.skus, Config.inventoryOffHeap());
+            columns.putAll(inventory);
+            inventory = columns;
+        }
         this.stock = inventory;
+        this.search.clear();
+        this.expiry.clear();
+        this.low_quantity.clear();
+        this.stock_journal.clear();
+        if (inventory instanceof MappedTable) {
+            // Index straight from the file so records stay undecoded until they are used.
+            ((MappedTable<Stock>) inventory).scan(this::indexRecord, this::index);
+        } else {
+            for (Stock item : inventory.values()) index(item);
+        }
+        this.reorder_pending.addAll(this.reorder_watchers.keySet());
     }
 
-    public HashMap<UUID, Stock> getLastStock() {
-        return this.last_stock;
+    public SkuRegistry getSkus() {
+        return this.skus;
     }
 
-    public void setLastStock(HashMap<UUID, Stock> last_stock) {
-        this.last_stock = last_stock;
+    public StockJournal getStockJournal() {
+        return this.stock_journal;
     }
 
-    public HashMap<UUID, Stock> getLastOrderItems() {
-        return last_order_items;
+    /**
+     * @return The locks a checkout holds on the stock items in its cart.
+     */
+    public StripedLocks getStockLocks() {
+        return this.stock_locks;
     }
 
-    public void setLastOrderItems(HashMap<UUID, Stock> last_order_items) {
-        this.last_order_items = last_order_items;
+    public Map<UUID, Order> getOrders() {
+        return orders;
     }
 
-    public HashMap<UUID, Order> getOrders() {
-        return orders;
+    /**
+     * @param orders Copied into a {@link UUIDMap}.
+     */
+    public void setOrders(final Map<UUID, Order> orders) {
+        this.orders = new UUIDMap<>(orders);
+        this.deliveries.clear();
+        this.ordered_stock.clear();
+        for (Order order : orders.values()) {
+            this.deliveries.schedule(order);
+            indexOrder(order);
+        }
     }
 
-    public void setOrders(final HashMap<UUID, Order> orders) {
-        this.orders = orders;
+    public DeliveryScheduler getDeliveries() {
+        return this.deliveries;
     }
 
     public List<AutoOrder> getAutoOrders() {
@@ -150,6 +274,9 @@ public class InventoryControl {
 
     public void setAutoOrders(final List<AutoOrder> auto_orders) {
         this.auto_orders = auto_orders;
+        this.reorder_watchers.clear();
+        for (AutoOrder auto_order : auto_orders) watch(auto_order);
+        this.reorder_pending.addAll(this.reorder_watchers.keySet());
     }
 
     // Backend Stock API
@@ -162,20 +289,143 @@ public class InventoryControl {
 
         if (stock == null) {
             this.stock.put(item.getID(), item);
+            index(item);
+            this.stock_journal.observed(item, item.getQuantity(), false);
         } else stock.setQuantity(stock.getQuantity() + item.getQuantity());
     }
 
+    /**
+     * Adds a batch of imported stock. Imported items count as already on the shelf, so they are not
+     * reported as stock discrepancies.
+     *
+     * @param items
+     */
+    public void importStock(final List<Stock> items) {
+        for (final Stock item : items) {
+            addStock(item);
+            this.stock_journal.forget(item.getID());
+        }
+    }
+
+    /**
+     * Records a purchase in the {@link StockJournal} before the quantity is taken out of stock.
+     *
+     * @param item
+     * @param quantity
+     */
+    public void sellStock(final Stock item, final int quantity) {
+        this.stock_journal.sold(item, quantity);
+    }
+
     /**
      * @param item
      */
-    @SuppressWarnings("unchecked")
     public void removeStock(final Stock item) {
-        this.stock.remove(item.id);
+        removeStock(item.id);
     }
 
-    @SuppressWarnings("unchecked")
     public Stock removeStock(UUID id) {
-        return this.stock.remove(id);
+        if (id == null) return null;
+        Stock item = this.stock.remove(id);
+        if (item != null) {
+            this.search.remove(this.skus.sku(id));
+            this.expiry.remove(id);
+            this.low_quantity.remove(id);
+            // Removing a sold out item takes nothing out of stock, so it is no discrepancy.
+            if (item.getQuantity() != 0) {
+                this.stock_journal.observed(item, -item.getQuantity(), true);
+            }
+            if (this.reorder_watchers.containsKey(id)) this.reorder_pending.add(id);
+        }
+        return item;
+    }
+
+    /**
+     * Called by {@link Stock#setQuantity(int)} for every item, including order copies that are not
+     * in stock.
+     *
+     * @param item
+     * @param previous The quantity before the change.
+     */
+    void quantityChanged(final Stock item, final int previous) {
+        if (!isStored(item)) return;
+        if (item instanceof Drug) this.low_quantity.add(item.getID());
+        this.stock_journal.observed(item, item.getQuantity() - previous, true);
+
+        List<AutoOrder> watchers = this.reorder_watchers.get(item.getID());
+        if (watchers == null) return;
+        for (AutoOrder auto_order : watchers) {
+            MinStock order_stock = auto_order.getQuantities().get(item.getID());
+            if (order_stock == null) continue;
+            int minimum = order_stock.minimum_quantity();
+            if (previous >= minimum && item.getQuantity() < minimum) {
+                this.reorder_pending.add(item.getID());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Called by {@link Stock#setName(String)} and {@link Drug#setDrugName(String)}, the item keeps
+     * its ID and only moves in the search index and to its new identity.
+     *
+     * @param item
+     * @param previous The identity before the change.
+     */
+    void nameChanged(final Stock item, final String previous) {
+        if (!isStored(item)) return;
+        this.skus.rename(item.getID(), previous, item.identity());
+        this.search.add(item.getSku(), item.getName(), drugName(item));
+    }
+
+    /**
+     * Called by {@link Drug#setExpirationDate(LocalDateTime)}, the drug keeps its ID and only moves
+     * in the expiry index and to its new identity.
+     *
+     * @param drug
+     * @param previous The identity before the change.
+     */
+    void expirationChanged(final Drug drug, final String previous) {
+        if (!isStored(drug)) return;
+        this.skus.rename(drug.getID(), previous, drug.identity());
+        this.expiry.add(drug.getID(), drug.getExpirationDate());
+    }
+
+    /**
+     * @param item
+     * @return Whether {@code item} is the one in stock and not a copy, such as an order item. Views
+     *     of a {@link ColumnStore} are created per lookup, so they are compared by store.
+     */
+    private boolean isStored(final Stock item) {
+        if (item.store != null) return item.store == this.stock && this.stock.containsKey(item.id);
+        return this.stock.get(item.getID()) == item;
+    }
+
+    private void index(final Stock item) {
+        item.sku = this.skus.register(item.getID(), item.identity());
+        this.search.add(item.sku, item.getName(), drugName(item));
+        if (!(item instanceof Drug)) return;
+        this.expiry.add(item.getID(), ((Drug) item).getExpirationDate());
+        this.low_quantity.add(item.getID());
+    }
+
+    private static String drugName(final Stock item) {
+        return item instanceof Drug ? ((Drug) item).getDrugName() : null;
+    }
+
+    private void indexRecord(final UUID id, final ByteBuffer record) {
+        String name = StockCodec.name(record);
+        String drug_name = StockCodec.drugName(record.duplicate());
+        LocalDateTime expiration_date = StockCodec.expirationDate(record.duplicate());
+        // The registry is not checkpointed, the identities are rebuilt from the records.
+        String identity =
+                drug_name == null
+                        ? Stock.identity(name)
+                        : Drug.identity(name, drug_name, expiration_date);
+        this.search.add(this.skus.register(id, identity), name, drug_name);
+        if (expiration_date == null) return;
+        this.expiry.add(id, expiration_date);
+        if (StockCodec.quantity(record) < Config.minDrugQuantity()) this.low_quantity.add(id);
     }
 
     // Backend Order API
@@ -184,6 +434,42 @@ public class InventoryControl {
      */
     public void addOrder(final Order order) {
         this.orders.put(order.getID(), order);
+        this.deliveries.schedule(order);
+        indexOrder(order);
+    }
+
+    /**
+     * @param id
+     * @return The removed order, or null if there is no such order.
+     */
+    public Order removeOrder(final UUID id) {
+        Order order = this.orders.remove(id);
+        if (order == null) return null;
+        this.deliveries.cancel(id);
+        for (final Stock item : order.getOrderItems()) {
+            Set<UUID> open_orders = this.ordered_stock.get(item.getID());
+            if (open_orders == null) continue;
+            open_orders.remove(id);
+            if (open_orders.isEmpty()) {
+                this.ordered_stock.remove(item.getID());
+                // Stock that is still short once its order is gone needs a new one
+                if (this.reorder_watchers.containsKey(item.getID())) {
+                    this.reorder_pending.add(item.getID());
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Moves an open order to a new shipment date and requeues its delivery.
+     *
+     * @param order
+     * @param shipment_date
+     */
+    public void updateShipmentDate(final Order order, final LocalDateTime shipment_date) {
+        order.setShipmentDate(shipment_date);
+        if (this.orders.get(order.getID()) == order) this.deliveries.schedule(order);
     }
 
     /**
@@ -191,6 +477,24 @@ public class InventoryControl {
      */
     public void addAutoOrder(final AutoOrder auto_order) {
         this.auto_orders.add(auto_order);
+        watch(auto_order);
+        for (Stock item : auto_order.getOrder().getOrderItems()) {
+            this.reorder_pending.add(item.getID());
+        }
+    }
+
+    /**
+     * @param id
+     * @return The removed auto order, or null if there is no such auto order.
+     */
+    public AutoOrder removeAutoOrder(final UUID id) {
+        for (AutoOrder auto_order : this.auto_orders) {
+            if (auto_order.getID().equals(id)) {
+                removeAutoOrder(auto_order);
+                return auto_order;
+            }
+        }
+        return null;
     }
 
     /**
@@ -198,62 +502,97 @@ public class InventoryControl {
      */
     public void removeAutoOrder(final AutoOrder auto_order) {
         this.auto_orders.remove(auto_order);
+        for (Stock item : auto_order.getOrder().getOrderItems()) {
+            List<AutoOrder> watchers = this.reorder_watchers.get(item.getID());
+            if (watchers == null) continue;
+            watchers.remove(auto_order);
+            if (watchers.isEmpty()) {
+                this.reorder_watchers.remove(item.getID());
+                this.reorder_pending.remove(item.getID());
+            }
+        }
+    }
+
+    /**
+     * Records an auto order in {@link #reorder_watchers}, which maps a stock ID to the auto orders
+     * that restock it.
+     */
+    private void watch(final AutoOrder auto_order) {
+        for (Stock item : auto_order.getOrder().getOrderItems()) {
+            List<AutoOrder> watchers =
+                    this.reorder_watchers.computeIfAbsent(item.getID(), id -> new ArrayList<>());
+            if (!watchers.contains(auto_order)) watchers.add(auto_order);
+        }
+    }
+
+    /** Runs on the scheduler thread, so it takes the same lock as the request path. */
+    private void deliverDue() {
+        Backend backend = Backend.get();
+        backend.getLock().writeLock().lock();
+        try {
+            updateDeliveries();
+        } finally {
+            backend.getLock().writeLock().unlock();
+        }
     }
 
     /**
      * @param order
      */
-    @SuppressWarnings("unchecked")
     private void deliverOrder(final Order order) {
-        this.last_stock = (HashMap<UUID, Stock>) this.stock.clone();
-        this.last_order_items.clear();
-        for (Stock item : order.getOrderItems()) {
-            this.last_order_items.put(item.getID(), item);
-        }
+        OrderEvent event = new OrderEvent();
+        event.begin();
         for (final Stock order_stock : order.getOrderItems()) {
-            Stock inventory_stock = this.stock.get(order_stock.getID());
-            if (inventory_stock == null) {
-                addStock(order_stock.clone());
-            } else if (inventory_stock instanceof Drug) {
-                // For Drug we cannot increase quantity due to expiration dates
-                addStock(order_stock.clone());
-            } else {
-                Stock new_stock = order_stock.clone();
-                new_stock.setQuantity(new_stock.getQuantity() + inventory_stock.getQuantity());
-                addStock(new_stock);
-            }
+            // Drugs are keyed by expiration date, so only the same batch is merged
+            Stock item = order_stock.clone();
+            boolean present = this.stock.containsKey(item.getID());
+            this.stock_journal.received(item, item.getQuantity(), present);
+            addStock(item);
         }
+        commit(event, "deliver", order);
     }
 
     /**
      * @param new_order
      */
     private void createUniqueOrder(final Order new_order) {
-        for (UUID key : this.orders.keySet()) {
-            Order order = this.orders.get(key);
-            for (Stock order_item : order.getOrderItems()) {
-                for (final Stock new_item : new_order.getOrderItems()) {
-                    if (new_item.getID().equals(order_item.getID())) {
-                        // Return early if the item is already ordered
-                        return;
-                    }
-                }
+        for (final Stock new_item : new_order.getOrderItems()) {
+            if (isStockOrdered(new_item)) {
+                // Return early if the item is already ordered
+                return;
             }
         }
 
-        Log.audit("New unique order: " + new_order);
+        OrderEvent event = new OrderEvent();
+        event.begin();
+        Log.audit(Category.Orders, "New unique order: {}", new_order);
         addOrder(new_order);
+        Backend.get().journal(Request.CreateOrder, new_order);
+        commit(event, "create", new_order);
+    }
+
+    private static void commit(final OrderEvent event, final String action, final Order order) {
+        if (!event.shouldCommit()) return;
+        event.action = action;
+        event.order = order.getID().toString();
+        event.items = order.getOrderItems().size();
+        event.commit();
     }
 
     private boolean isStockOrdered(Stock ordered_stock) {
-        for (UUID key : this.orders.keySet()) {
-            for (final Stock stock : this.orders.get(key).getOrderItems()) {
-                if (stock.getID().equals(ordered_stock.getID())) {
-                    return true;
-                }
-            }
+        return this.ordered_stock.containsKey(ordered_stock.getID());
+    }
+
+    /**
+     * Records every item of an open order in {@link #ordered_stock}, which maps a stock ID to the
+     * open orders that contain it.
+     */
+    private void indexOrder(final Order order) {
+        for (final Stock item : order.getOrderItems()) {
+            this.ordered_stock
+                    .computeIfAbsent(item.getID(), id -> new HashSet<UUID>())
+                    .add(order.getID());
         }
-        return false;
     }
 }
 
@@ -262,7 +601,9 @@ enum DiscountType {
     PercentDiscount,
 }
 
-class Discount {
+class Discount implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     protected double discount;
     protected LocalDateTime expiration;
 
@@ -270,9 +611,20 @@ class Discount {
      * @param discount
      */
     Discount(final double discount, final LocalDateTime expiration) {
+        this(discount, expiration, true);
+    }
+
+    /**
+     * @param discount
+     * @param expiration
+     * @param log
+     */
+    Discount(final double discount, final LocalDateTime expiration, final boolean log) {
         this.discount = discount;
         this.expiration = expiration;
-        Log.audit("Discount created.");
+        if (log) {
+            Log.audit("Discount created.");
+        }
     }
 
     protected boolean isExpired() {
@@ -297,6 +649,8 @@ class Discount {
 }
 
 class PercentDiscount extends Discount {
+    private static final long serialVersionUID = 1L;
+
     /**
      * Constructs a {@code PercentDiscount} instance with the specified discount value.
      *
@@ -308,7 +662,16 @@ class PercentDiscount extends Discount {
      * @throws IllegalArgumentException if the discount is greater than 1.0 or less than 0.0.
      */
     PercentDiscount(final double discount, final LocalDateTime expiration) {
-        super(discount, expiration);
+        this(discount, expiration, true);
+    }
+
+    /**
+     * @param discount
+     * @param expiration
+     * @param log
+     */
+    PercentDiscount(final double discount, final LocalDateTime expiration, final boolean log) {
+        super(discount, expiration, log);
         if (discount > 1.0 || discount < 0.0)
             throw new IllegalArgumentException("Percent discount out of range (0.0-1.0)");
     }
@@ -335,9 +698,17 @@ enum StockType {
     Drug,
 }
 
-class Stock implements Cloneable {
+/**
+ * A stock item. An item that belongs to a {@link ColumnStore} is a view of its row: the fields
+ * below are unused and every getter and setter goes to the store.
+ */
+class Stock implements Cloneable, Serializable {
+    private static final long serialVersionUID = 1L;
+
     // Data Members
     protected UUID id;
+    protected transient int sku;
+    protected transient ColumnStore store;
     protected int quantity;
     protected double price;
     protected String name;
@@ -356,8 +727,30 @@ class Stock implements Cloneable {
         this.price = price;
         this.discount = discount;
         this.name = name;
-        createID();
-        Log.audit("Stock created: " + this);
+        this.id = skus().identify(identity());
+        Log.audit(Category.Inventory, "Stock created: {}", this);
+    }
+
+    /**
+     * Restores a stock item that already has an ID, without auditing or rekeying it.
+     *
+     * @param id
+     * @param quantity
+     * @param price
+     * @param name
+     * @param discount
+     */
+    Stock(
+            final UUID id,
+            final int quantity,
+            final double price,
+            final String name,
+            final Discount discount) {
+        this.id = id;
+        this.quantity = quantity;
+        this.price = price;
+        this.name = name;
+        this.discount = discount;
     }
 
     // Getters/Setters
@@ -365,50 +758,90 @@ class Stock implements Cloneable {
         return id;
     }
 
+    /**
+     * @return The dense key of this item in the {@link SkuRegistry}.
+     */
+    public int getSku() {
+        if (this.sku == SkuRegistry.NONE) this.sku = skus().register(this.id);
+        return this.sku;
+    }
+
     public int getQuantity() {
-        return this.quantity;
+        return this.store == null ? this.quantity : this.store.quantity(this.sku);
     }
 
     public void setQuantity(final int quantity) {
-        this.quantity = quantity;
+        int previous = getQuantity();
+        if (this.store == null) this.quantity = quantity;
+        else this.store.setQuantity(this.sku, quantity);
+        Backend.get().inventory.quantityChanged(this, previous);
     }
 
     public double getPrice() {
-        if (this.discount == null) return this.price;
-        else if (this.discount.expiration.isBefore(LocalDateTime.now())) {
-            return this.price;
+        double price = basePrice();
+        Discount discount = getDiscount();
+        if (discount == null) return price;
+        else if (discount.expiration.isBefore(LocalDateTime.now())) {
+            return price;
         } else {
-            return this.discount.getDiscount(this.price);
+            return discount.getDiscount(price);
         }
     }
 
+    /**
+     * @return The price before any discount.
+     */
+    double basePrice() {
+        return this.store == null ? this.price : this.store.price(this.sku);
+    }
+
     public void setPrice(final double price) {
-        this.price = price;
+        if (this.store == null) this.price = price;
+        else this.store.setPrice(this.sku, price);
     }
 
     public Discount getDiscount() {
-        return discount;
+        return this.store == null ? this.discount : this.store.discount(this.sku);
     }
 
     public void setDiscount(final Discount discount) {
-        this.discount = discount;
+        if (this.store == null) this.discount = discount;
+        else this.store.setDiscount(this.sku, discount);
     }
 
     public String getName() {
-        return this.name;
+        return this.store == null ? this.name : this.store.name(this.sku);
     }
 
     public void setName(final String name) {
-        this.name = name;
-        createID();
+        String previous = identity();
+        if (this.store == null) this.name = name;
+        else this.store.setName(this.sku, name);
+        Backend.get().inventory.nameChanged(this, previous);
+    }
+
+    /**
+     * @return What the ID of a new item with these attributes is derived from.
+     */
+    String identity() {
+        return identity(getName());
+    }
+
+    static String identity(final String name) {
+        return name;
     }
 
     // Override Methods
     @Override
     public Stock clone() {
         try {
-            Log.audit("Cloning stock: " + this);
-            return (Stock) super.clone();
+            Log.trace(Category.Inventory, "Cloning stock: {}", this);
+            Stock copy = (Stock) super.clone();
+            if (copy.store != null) {
+                copy.detach();
+                copy.store = null;
+            }
+            return copy;
         } catch (final CloneNotSupportedException e) {
             throw new AssertionError("Clone not supposed for " + this.getClass().getName());
         }
@@ -429,16 +862,27 @@ class Stock implements Cloneable {
                 + "]";
     }
 
-    private void createID() {
-        InventoryControl inventory = Backend.get().inventory;
-        Stock stock = (Stock) inventory.removeStock(this.id);
+    /** Copies the row of a view into the fields. */
+    void detach() {
+        this.quantity = this.store.quantity(this.sku);
+        this.price = this.store.price(this.sku);
+        this.name = this.store.name(this.sku);
+        this.discount = this.store.discount(this.sku);
+    }
+
+    /** A view is serialized as a detached copy. */
+    Object writeReplace() {
+        return this.store == null ? this : clone();
+    }
 
-        this.id = UUID.nameUUIDFromBytes(name.getBytes());
-        if (stock != null) inventory.addStock(stock);
+    static SkuRegistry skus() {
+        return Backend.get().inventory.getSkus();
     }
 }
 
 class Drug extends Stock {
+    private static final long serialVersionUID = 1L;
+
     // Data Members
     private boolean is_controlled;
     private String drug_name;
@@ -462,38 +906,71 @@ class Drug extends Stock {
             final boolean is_controlled,
             final String drug_name,
             final LocalDateTime expiration_date) {
-        super(quantity, price, name, discount);
+        super(null, quantity, price, name, discount);
+        this.is_controlled = is_controlled;
+        this.drug_name = drug_name;
+        this.expiration_date = expiration_date;
+        this.id = skus().identify(identity());
+        Log.audit(Category.Inventory, "Stock created: {}", this);
+    }
+
+    /**
+     * Restores a drug that already has an ID, without auditing or rekeying it.
+     *
+     * @param id
+     * @param quantity
+     * @param price
+     * @param name
+     * @param discount
+     * @param is_controlled
+     * @param drug_name
+     * @param expiration_date
+     */
+    Drug(
+            final UUID id,
+            final int quantity,
+            final double price,
+            final String name,
+            final Discount discount,
+            final boolean is_controlled,
+            final String drug_name,
+            final LocalDateTime expiration_date) {
+        super(id, quantity, price, name, discount);
         this.is_controlled = is_controlled;
         this.drug_name = drug_name;
         this.expiration_date = expiration_date;
-        createID();
     }
 
     // Getters/Setters
     public boolean getIsControlled() {
-        return this.is_controlled;
+        return this.store == null ? this.is_controlled : this.store.isControlled(this.sku);
     }
 
     public void setIsControlled(final boolean is_controlled) {
-        this.is_controlled = is_controlled;
+        if (this.store == null) this.is_controlled = is_controlled;
+        else this.store.setControlled(this.sku, is_controlled);
     }
 
     public String getDrugName() {
-        return this.drug_name;
+        return this.store == null ? this.drug_name : this.store.drugName(this.sku);
     }
 
     public void setDrugName(final String drug_name) {
-        this.drug_name = drug_name;
-        createID();
+        String previous = identity();
+        if (this.store == null) this.drug_name = drug_name;
+        else this.store.setDrugName(this.sku, drug_name);
+        Backend.get().inventory.nameChanged(this, previous);
     }
 
     public LocalDateTime getExpirationDate() {
-        return this.expiration_date;
+        return this.store == null ? this.expiration_date : this.store.expirationDate(this.sku);
     }
 
     public void setExpirationDate(final LocalDateTime expiration_date) {
-        this.expiration_date = expiration_date;
-        createID();
+        String previous = identity();
+        if (this.store == null) this.expiration_date = expiration_date;
+        else this.store.setExpirationDate(this.sku, expiration_date);
+        Backend.get().inventory.expirationChanged(this, previous);
     }
 
     // Override Methods
@@ -514,15 +991,28 @@ class Drug extends Stock {
                 + "]";
     }
 
-    private void createID() {
-        InventoryControl inventory = Backend.get().inventory;
-        Drug drug = (Drug) inventory.removeStock(this.id);
-        this.id = UUID.nameUUIDFromBytes((name + drug_name + expiration_date).getBytes());
-        if (drug != null) inventory.addStock(drug);
+    @Override
+    String identity() {
+        return identity(getName(), getDrugName(), getExpirationDate());
+    }
+
+    @Override
+    void detach() {
+        super.detach();
+        this.is_controlled = this.store.isControlled(this.sku);
+        this.drug_name = this.store.drugName(this.sku);
+        this.expiration_date = this.store.expirationDate(this.sku);
+    }
+
+    static String identity(
+            final String name, final String drug_name, final LocalDateTime expiration_date) {
+        return name + drug_name + expiration_date;
     }
 }
 
-class Order {
+class Order implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     // Data Members
     private UUID order_id;
     private List<Stock> order_items;
@@ -536,7 +1026,7 @@ class Order {
         this.order_id = UUID.randomUUID();
         this.order_items = order_items;
         this.shipment_date = Config.orderDeliveryTime();
-        Log.audit("Order created: " + this);
+        Log.audit(Category.Orders, "Order created: {}", this);
     }
 
     /**
@@ -549,7 +1039,7 @@ class Order {
         final List<Stock> order_items = new ArrayList<>();
         order_items.add(order_item);
         this.order_items = order_items;
-        Log.audit("Order created: " + this);
+        Log.audit(Category.Orders, "Order created: {}", this);
     }
 
     // Getters/Setters
@@ -586,10 +1076,12 @@ class Order {
     }
 }
 
-record MinStock(int minimum_quantity, int order_quantity) {}
+record MinStock(int minimum_quantity, int order_quantity) implements Serializable {}
 
 // Restock request
-class AutoOrder {
+class AutoOrder implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private UUID id;
     private HashMap<UUID, MinStock> quantities;
     private Order order;
@@ -598,7 +1090,7 @@ class AutoOrder {
         this.id = UUID.randomUUID();
         this.quantities = quantities;
         this.order = order;
-        Log.audit("Auto order created: " + this);
+        Log.audit(Category.Orders, "Auto order created: {}", this);
     }
 
     public UUID getID() {
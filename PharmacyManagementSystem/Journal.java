@@ -0,0 +1,692 @@
+package PharmacyManagementSystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * The {@link Journal} is an append-only write-ahead log of every mutation accepted by {@link
+ * API#receive(Session, Request, Object)}, and of the changes maintenance jobs, deliveries and
+ * failed logins make on their own, paired with periodic compacted checkpoints of the {@link
+ * Backend} and {@link InventoryControl} tables.
+ *
+ * <p>Entries are encoded on the calling thread and handed to a background writer which batches them
+ * into a single write and {@code fsync} (group commit), so the request path never waits on the
+ * disk. On startup {@link #recover(API)} maps the last checkpoint and replays every entry written
+ * after it.
+ *
+ * <p>A checkpoint is a {@code checkpoint-<sequence>} directory holding the account, customer and
+ * stock tables as {@link MappedTable} files, plus a serialized {@link Snapshot} of the order book.
+ * The {@code CURRENT} file names the live checkpoint and is replaced atomically.
+ *
+ * <p>The journal is split into {@code journal-<sequence>.bin} segments. A checkpoint starts a new
+ * segment while it holds the write lock, so requests appended while the tables are written go to
+ * the new segment, and the older segments are deleted once {@code CURRENT} names the checkpoint.
+ *
+ * <p>Each journal record is framed as {@code [int length][int crc][long sequence][payload]}, where
+ * the CRC covers the sequence and payload. A torn record at the tail of the file is discarded.
+ */
+public class Journal {
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    private final Path directory;
+    private final long flush_millis;
+    private final Object lock = new Object();
+    private final Object io = new Object();
+    private final Thread writer;
+
+    // Guarded by io.
+    private FileChannel channel;
+    private long segment;
+
+    private List<ByteBuffer> pending;
+    private long sequence;
+    private long durable_sequence;
+    private long checkpoint_sequence;
+    private Exception failure;
+    private boolean closed;
+
+    /**
+     * @param directory Directory holding the journal and snapshot files, created if missing.
+     */
+    public Journal(final String directory) {
+        try {
+            this.directory = Paths.get(directory);
+            Files.createDirectories(this.directory);
+            // A journal written before segments becomes the first segment.
+            Path unsegmented = this.directory.resolve("journal.bin");
+            if (Files.exists(unsegmented) && segments().isEmpty()) {
+                Files.move(unsegmented, segmentPath(0));
+            }
+            List<Long> segments = segments();
+            this.segment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+            this.channel = openSegment(this.segment);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot open journal in " + directory + ": " + e);
+        }
+        this.flush_millis = Config.journalFlushMillis();
+        this.pending = new ArrayList<>();
+        this.writer = new Thread(this::flushLoop, "journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @param request
+     * @return Whether a successful {@code request} changes backend state and must be journaled.
+     */
+    public static boolean isMutation(final Request request) {
+        switch (request) {
+            case CreateAccount:
+            case CreateStock:
+            case CreateDiscount:
+            case CreateCustomer:
+            case CreatePrescription:
+            case CreateOrder:
+            case CreateAutoOrder:
+            case RemoveAccount:
+            case RemoveDiscount:
+            case RemoveStock:
+            case RemoveCustomer:
+            case RemoveOrder:
+            case RemoveAutoOrder:
+            case RemoveNotification:
+            case UnlockAccount:
+            case UpdateAccount:
+            case UpdateStock:
+            case UpdateDrug:
+            case UpdateCustomer:
+            case UpdateOrder:
+            case PurchaseStock:
+            case PickupPrescription:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Serializes a request before it is executed, so the journal captures its input rather than
+     * whatever the request later does to the objects it was given.
+     *
+     * @param request
+     * @param account The account making the request, or null.
+     * @param data
+     * @return The encoded entry, or null if the data cannot be serialized.
+     */
+    public byte[] encode(final Request request, final Account account, final Object data) {
+        return encode(
+                new JournalEntry(request, account == null ? null : account.getID(), data), request);
+    }
+
+    /**
+     * @param order The ID of the order delivered.
+     * @return The encoded entry, or null if it cannot be serialized.
+     */
+    public byte[] encodeDelivery(final UUID order) {
+        return encode(new DeliveryEntry(order), "delivery");
+    }
+
+    /**
+     * @param account The account whose failed attempts or lock changed.
+     * @return The encoded entry, or null if it cannot be serialized.
+     */
+    public byte[] encodeLockout(final Account account) {
+        return encode(
+                new LockoutEntry(account.getID(), account.getFailureAttempts(), account.isLocked()),
+                "lockout");
+    }
+
+    /**
+     * Queues an encoded entry for the next group commit. Does not wait for the disk.
+     *
+     * @param entry An entry returned by {@link #encode(Request, Account, Object)}.
+     */
+    public void append(final byte[] entry) {
+        if (entry == null) return;
+        synchronized (this.lock) {
+            if (this.closed) {
+                Log.error("Journal is closed, dropping entry.");
+                return;
+            }
+            this.sequence++;
+            this.pending.add(frame(this.sequence, entry));
+            this.lock.notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until every appended entry has been written and forced to disk.
+     *
+     * @return False if the last write failed, its entries stay queued and are written again.
+     */
+    public boolean sync() {
+        synchronized (this.lock) {
+            while (this.durable_sequence < this.sequence
+                    && this.failure == null
+                    && this.writer.isAlive()) {
+                try {
+                    this.lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return this.durable_sequence >= this.sequence;
+        }
+    }
+
+    /**
+     * @return Whether enough entries were appended since the last snapshot to compact the journal.
+     */
+    public boolean shouldCheckpoint() {
+        synchronized (this.lock) {
+            return this.sequence - this.checkpoint_sequence >= Config.checkpointEntries();
+        }
+    }
+
+    /**
+     * Writes a compacted snapshot of the backend and deletes the journal segments it replaces.
+     * Requests wait while the tables are written.
+     *
+     * @param backend
+     */
+    public void checkpoint(final Backend backend) {
+        // A checkpoint holds every entry appended so far, so it is taken even if they are not
+        // durable yet.
+        if (!sync()) Log.warning("Journal is behind, checkpointing entries not written yet.");
+
+        long snapshot_sequence;
+        String name;
+        String current = currentCheckpoint();
+        // Checkouts run under the read lock, so only the write lock keeps the tables still.
+        backend.getLock().writeLock().lock();
+        try {
+            synchronized (this.lock) {
+                snapshot_sequence = this.sequence;
+            }
+            name = "checkpoint-" + snapshot_sequence;
+            if (name.equals(current)) return;
+            // Nothing appends under the write lock, so every later entry lands in the new segment.
+            startSegment(snapshot_sequence);
+            writeCheckpoint(backend, snapshot_sequence, this.directory.resolve(name));
+        } catch (Exception e) {
+            Log.error("Journal checkpoint failed: " + e);
+            return;
+        } finally {
+            backend.getLock().writeLock().unlock();
+        }
+
+        try {
+            Path temporary = this.directory.resolve("CURRENT.tmp");
+            Files.writeString(temporary, name);
+            Files.move(
+                    temporary,
+                    this.directory.resolve("CURRENT"),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            Log.error("Journal checkpoint failed: " + e);
+            return;
+        }
+        deleteStaleCheckpoints(name);
+
+        synchronized (this.lock) {
+            this.checkpoint_sequence = snapshot_sequence;
+        }
+        deleteSegmentsBefore(snapshot_sequence);
+        Log.info("Journal checkpoint written at entry " + snapshot_sequence + ".");
+    }
+
+    /**
+     * Restores the last snapshot and replays the journal written after it. Call it before {@link
+     * Backend#startMaintenance()}, so no delivery or maintenance job runs between replayed entries.
+     *
+     * @param api The API used to re-apply journaled requests.
+     * @return True if any state was recovered, false if the store must be seeded.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean recover(final API api) {
+        Backend backend = Backend.get();
+        boolean recovered = false;
+        long snapshot_sequence = 0;
+        long start = System.nanoTime();
+
+        String current = currentCheckpoint();
+        if (current != null) {
+            // Nothing is mapped yet, so checkpoints a previous run could not delete go now.
+            deleteStaleCheckpoints(current);
+            Path checkpoint = this.directory.resolve(current);
+            try (ObjectInputStream in =
+                    new ObjectInputStream(
+                            new BufferedInputStream(
+                                    Files.newInputStream(checkpoint.resolve("snapshot.bin"))))) {
+                Snapshot snapshot = (Snapshot) in.readObject();
+                restore(backend, checkpoint, snapshot);
+                snapshot_sequence = snapshot.sequence();
+                recovered = true;
+            } catch (Exception e) {
+                Log.error("Cannot read journal checkpoint " + current + ": " + e);
+            }
+        }
+
+        long last_sequence = snapshot_sequence;
+        int replayed = 0;
+        int failed = 0;
+        synchronized (this.io) {
+            try {
+                // Segments the checkpoint replaced but a previous run could not delete.
+                deleteSegmentsBefore(snapshot_sequence);
+                for (long first : segments()) {
+                    boolean active = first == this.segment;
+                    FileChannel file =
+                            active
+                                    ? this.channel
+                                    : FileChannel.open(segmentPath(first), StandardOpenOption.READ);
+                    try {
+                        long position = 0;
+                        long size = file.size();
+                        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                        while (position + HEADER_SIZE <= size) {
+                            header.clear();
+                            file.read(header, position);
+                            header.flip();
+                            int length = header.getInt();
+                            int crc = header.getInt();
+                            long entry_sequence = header.getLong();
+                            if (length < 0 || position + HEADER_SIZE + length > size) break;
+
+                            ByteBuffer payload = ByteBuffer.allocate(length);
+                            file.read(payload, position + HEADER_SIZE);
+                            if (checksum(entry_sequence, payload.array()) != crc) break;
+                            position += HEADER_SIZE + length;
+
+                            if (entry_sequence <= last_sequence) continue;
+                            // The entry keeps its sequence even if it fails, so later entries still
+                            // replay and new ones are numbered after every entry in the journal.
+                            last_sequence = entry_sequence;
+                            try (ObjectInputStream in =
+                                    new ObjectInputStream(
+                                            new ByteArrayInputStream(payload.array()))) {
+                                Object entry = in.readObject();
+                                if (entry instanceof DeliveryEntry) {
+                                    replay(api, (DeliveryEntry) entry);
+                                } else if (entry instanceof LockoutEntry) {
+                                    replay(api, (LockoutEntry) entry);
+                                } else {
+                                    replay(api, (JournalEntry) entry);
+                                }
+                                replayed++;
+                            } catch (Exception e) {
+                                failed++;
+                                Log.error("Skipping journal entry " + entry_sequence + ": " + e);
+                            }
+                        }
+                        if (position < size && active) {
+                            Log.warning("Discarding torn journal tail at byte " + position + ".");
+                            file.truncate(position);
+                        } else if (position < size) {
+                            Log.error(
+                                    "Journal segment "
+                                            + first
+                                            + " is damaged at byte "
+                                            + position
+                                            + ", skipping the rest of it.");
+                        }
+                    } finally {
+                        if (!active) file.close();
+                    }
+                }
+                this.channel.position(this.channel.size());
+            } catch (IOException e) {
+                // Appending after entries that were not read would reuse their sequences.
+                throw new IllegalStateException("Cannot read journal: " + e);
+            }
+        }
+        if (failed > 0) Log.error(failed + " journal entries could not be replayed.");
+
+        synchronized (this.lock) {
+            this.sequence = last_sequence;
+            this.durable_sequence = last_sequence;
+            this.checkpoint_sequence = snapshot_sequence;
+        }
+
+        if (replayed > 0) recovered = true;
+        if (recovered) {
+            Log.info(
+                    "Recovered snapshot "
+                            + snapshot_sequence
+                            + " and replayed "
+                            + replayed
+                            + " journal entries in "
+                            + (System.nanoTime() - start) / 1_000_000
+                            + "ms.");
+        }
+        return recovered;
+    }
+
+    /** Flushes outstanding entries and stops the writer. */
+    public void close() {
+        if (!sync()) Log.error("Journal closing with entries not written.");
+        synchronized (this.lock) {
+            this.closed = true;
+            this.lock.notifyAll();
+        }
+        try {
+            this.writer.join();
+            this.channel.close();
+        } catch (Exception e) {
+            Log.error("Exception in journal close: " + e);
+        }
+    }
+
+    private static void restore(
+            final Backend backend, final Path checkpoint, final Snapshot snapshot)
+            throws Exception {
+        backend.getLock().writeLock().lock();
+        try {
+            backend.setAccounts(
+                    MappedTable.open(checkpoint.resolve("accounts.tbl"), TableCodec.ACCOUNT));
+            backend.setCustomers(
+                    MappedTable.open(checkpoint.resolve("customers.tbl"), TableCodec.CUSTOMER));
+            backend.inventory.setStock(
+                    MappedTable.open(checkpoint.resolve("stock.tbl"), TableCodec.STOCK));
+            backend.inventory.setOrders(snapshot.orders());
+            backend.inventory.setAutoOrders(snapshot.auto_orders());
+        } finally {
+            backend.getLock().writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the binary account, customer and stock tables plus a serialized snapshot of the order
+     * book into a fresh checkpoint directory.
+     */
+    private void writeCheckpoint(final Backend backend, final long sequence, final Path checkpoint)
+            throws Exception {
+        Files.createDirectories(checkpoint);
+        InventoryControl inventory = backend.inventory;
+        MappedTable.write(
+                checkpoint.resolve("accounts.tbl"), backend.getAccounts(), TableCodec.ACCOUNT);
+        MappedTable.write(
+                checkpoint.resolve("customers.tbl"), backend.getCustomers(), TableCodec.CUSTOMER);
+        MappedTable.write(checkpoint.resolve("stock.tbl"), inventory.getStock(), TableCodec.STOCK);
+
+        Snapshot snapshot =
+                new Snapshot(
+                        sequence, new HashMap<>(inventory.getOrders()), inventory.getAutoOrders());
+        try (FileChannel file =
+                FileChannel.open(
+                        checkpoint.resolve("snapshot.bin"),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream stream = new BufferedOutputStream(Channels.newOutputStream(file));
+            ObjectOutputStream out = new ObjectOutputStream(stream);
+            out.writeObject(snapshot);
+            out.flush();
+            file.force(true);
+        }
+    }
+
+    private String currentCheckpoint() {
+        Path current = this.directory.resolve("CURRENT");
+        if (!Files.exists(current)) return null;
+        try {
+            return Files.readString(current).trim();
+        } catch (Exception e) {
+            Log.error("Cannot read journal CURRENT file: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Sends every entry appended from now on to a new segment.
+     *
+     * @param first The sequence of the checkpoint the segment follows, which names it.
+     */
+    private void startSegment(final long first) throws IOException {
+        synchronized (this.io) {
+            if (this.segment == first) return;
+            FileChannel next = openSegment(first);
+            this.channel.close();
+            this.channel = next;
+            this.segment = first;
+        }
+    }
+
+    /**
+     * Deletes the segments that only hold entries up to a checkpoint. The segment named after the
+     * checkpoint stays, it holds the entries appended after it.
+     *
+     * @param sequence The sequence of the live checkpoint.
+     */
+    private void deleteSegmentsBefore(final long sequence) {
+        try {
+            for (long first : segments()) {
+                if (first < sequence) Files.deleteIfExists(segmentPath(first));
+            }
+        } catch (Exception e) {
+            Log.warning("Cannot delete old journal segments, deleting them later: " + e);
+        }
+    }
+
+    /**
+     * @return The first sequence of every segment, in order.
+     */
+    private List<Long> segments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files =
+                Files.newDirectoryStream(this.directory, "journal-*.bin")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.add(Long.parseLong(name.substring(8, name.length() - 4)));
+                } catch (NumberFormatException e) {
+                    Log.warning("Ignoring unknown journal file " + name + ".");
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private Path segmentPath(final long first) {
+        return this.directory.resolve("journal-" + first + ".bin");
+    }
+
+    private FileChannel openSegment(final long first) throws IOException {
+        return FileChannel.open(
+                segmentPath(first),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Deletes every checkpoint directory but {@code keep}. The backend may still map the tables of
+     * an old checkpoint, which Windows refuses to delete, so those are left for a later checkpoint
+     * or the next startup.
+     *
+     * @param keep The name of the live checkpoint.
+     */
+    private void deleteStaleCheckpoints(final String keep) {
+        try (DirectoryStream<Path> checkpoints =
+                Files.newDirectoryStream(this.directory, "checkpoint-*")) {
+            for (Path checkpoint : checkpoints) {
+                if (!checkpoint.getFileName().toString().equals(keep)) deleteCheckpoint(checkpoint);
+            }
+        } catch (Exception e) {
+            Log.warning("Cannot list old checkpoints: " + e);
+        }
+    }
+
+    private static void deleteCheckpoint(final Path checkpoint) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(checkpoint)) {
+            for (Path file : files) Files.deleteIfExists(file);
+            Files.deleteIfExists(checkpoint);
+        } catch (Exception e) {
+            Log.debug("Old checkpoint " + checkpoint + " still in use, deleting it later: " + e);
+        }
+    }
+
+    private static byte[] encode(final Serializable entry, final Object what) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(entry);
+            }
+            return bytes.toByteArray();
+        } catch (Exception e) {
+            Log.error("Cannot journal " + what + ": " + e);
+            return null;
+        }
+    }
+
+    private void replay(final API api, final DeliveryEntry entry) {
+        Response response = api.replayDelivery(entry.order());
+        if (response != Response.Ok) {
+            Log.warning("Journal replay of delivery " + entry.order() + " returned " + response);
+        }
+    }
+
+    private void replay(final API api, final LockoutEntry entry) {
+        Response response =
+                api.replayLockout(entry.account(), entry.failure_attempts(), entry.locked());
+        if (response != Response.Ok) {
+            Log.warning("Journal replay of lockout " + entry.account() + " returned " + response);
+        }
+    }
+
+    private void replay(final API api, final JournalEntry entry) {
+        Account account =
+                entry.account() == null ? null : Backend.get().getAccounts().get(entry.account());
+        Response response = api.replay(account, entry.request(), entry.data());
+        if (response != Response.Ok) {
+            Log.warning("Journal replay of " + entry.request() + " returned " + response);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            synchronized (this.lock) {
+                while (this.pending.isEmpty() && !this.closed) {
+                    try {
+                        this.lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (this.pending.isEmpty()) return;
+            }
+
+            // Let concurrent appends join this commit.
+            try {
+                Thread.sleep(this.flush_millis);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            List<ByteBuffer> batch;
+            long batch_sequence;
+            synchronized (this.lock) {
+                batch = this.pending;
+                batch_sequence = this.sequence;
+                this.pending = new ArrayList<>();
+            }
+
+            Exception failure = null;
+            synchronized (this.io) {
+                long size = -1;
+                try {
+                    ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+                    long remaining = 0;
+                    for (ByteBuffer buffer : buffers) remaining += buffer.remaining();
+                    size = this.channel.size();
+                    this.channel.position(size);
+                    while (remaining > 0) remaining -= this.channel.write(buffers);
+                    this.channel.force(false);
+                } catch (Exception e) {
+                    failure = e;
+                    // Cut off whatever part of the batch was written, it is written again whole.
+                    try {
+                        if (size >= 0) this.channel.truncate(size);
+                    } catch (Exception t) {
+                        Log.error("Journal truncate failed: " + t);
+                    }
+                }
+            }
+
+            synchronized (this.lock) {
+                this.failure = failure;
+                if (failure == null) {
+                    this.durable_sequence = batch_sequence;
+                } else if (this.closed) {
+                    Log.error(
+                            "Journal write failed, dropping "
+                                    + batch.size()
+                                    + " entries: "
+                                    + failure);
+                    this.lock.notifyAll();
+                    return;
+                } else {
+                    Log.error("Journal write failed, retrying: " + failure);
+                    for (ByteBuffer buffer : batch) buffer.rewind();
+                    batch.addAll(this.pending);
+                    this.pending = batch;
+                }
+                this.lock.notifyAll();
+            }
+        }
+    }
+
+    private static ByteBuffer frame(final long sequence, final byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length);
+        buffer.putInt(checksum(sequence, payload));
+        buffer.putLong(sequence);
+        buffer.put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int checksum(final long sequence, final byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, sequence));
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
+
+/** A journaled request, made by {@code account}, or by maintenance when it is null. */
+record JournalEntry(Request request, UUID account, Object data) implements Serializable {}
+
+/** A journaled delivery of an open order by the {@link DeliveryScheduler}. */
+record DeliveryEntry(UUID order) implements Serializable {}
+
+/** The failed login attempts and lock of an account after a login changed them. */
+record LockoutEntry(UUID account, int failure_attempts, boolean locked) implements Serializable {}
+
+record Snapshot(long sequence, HashMap<UUID, Order> orders, List<AutoOrder> auto_orders)
+        implements Serializable {}
@@ -1,9 +1,10 @@
 package PharmacyManagementSystem;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 enum Level {
@@ -14,103 +15,311 @@ enum Level {
     Error,
     TUI, // Terminal UI
     Audit,
+    Off,
 }
 
+/** The part of the system a record comes from, each category has its own level. */
+enum Category {
+    General,
+    Inventory,
+    Orders,
+    Customers,
+    Accounts,
+    Requests,
+    Server,
+    Maintenance,
+}
+
+/**
+ * Records are written by the {@link LogWriter} thread, so logging does not block the caller on the
+ * console or the activity log file.
+ *
+ * <p>Each {@link Category} has a level that can be changed at runtime, starting from {@link
+ * Config#logLevel(Category)}. Audit records respect it as well, only {@link Level#Off} silences
+ * them. The {@link Supplier} and pattern overloads build the message only when it is enabled, and
+ * the pattern overloads allocate nothing when it is not. A pattern replaces each {@code {}} with
+ * the next argument.
+ */
 public class Log {
-    public static final Level LOG_LEVEL = Level.Trace;
-    private static LocalDate log_date;
-    private static FileWriter writer;
-    private static File file;
+    private static final LogWriter writer = new LogWriter();
+    private static volatile Level[] levels = initLevels();
 
     public static void init() {
-        try {
-            log_date = LocalDate.now();
-            file = new File(log_date + "ActivityLog.log");
-            file.createNewFile();
-            writer = new FileWriter(file, true);
-        } catch (Exception e) {
-            Log.error("Exception in logger init: " + e);
-        }
+        writer.openFile();
     }
 
+    /** Writes out every pending record and closes the activity log. */
     public static void clean() {
-        try {
-            writer.close();
-        } catch (Exception e) {
-            Log.error("Exception in logger clean: " + e);
-        }
+        writer.close();
+    }
+
+    /**
+     * @param category
+     * @param level The lowest level that is logged, {@link Level#Off} logs nothing.
+     */
+    public static synchronized void setLevel(Category category, Level level) {
+        Level[] updated = levels.clone();
+        updated[category.ordinal()] = level;
+        levels = updated;
+    }
+
+    /**
+     * @param level Applied to every category.
+     */
+    public static synchronized void setLevel(Level level) {
+        Level[] updated = new Level[Category.values().length];
+        Arrays.fill(updated, level);
+        levels = updated;
+    }
+
+    public static Level getLevel(Category category) {
+        return levels[category.ordinal()];
+    }
+
+    /**
+     * @param category
+     * @param level
+     * @return Whether a record of that level and category would be written.
+     */
+    public static boolean isEnabled(Category category, Level level) {
+        return level.ordinal() >= levels[category.ordinal()].ordinal();
     }
 
     public static void logStack() {
-        System.out.println(levelPrefix(Level.Trace) + "Stack Trace: " + getCaller());
+        if (isEnabled(Category.General, Level.Trace)) {
+            log(Level.Trace, true, "Stack Trace: " + getCaller());
+        }
     }
 
     public static void trace(String message) {
-        log(Level.Trace, true, message);
+        if (isEnabled(Category.General, Level.Trace)) log(Level.Trace, true, message);
+    }
+
+    public static void trace(Supplier<String> message) {
+        if (isEnabled(Category.General, Level.Trace)) log(Level.Trace, true, message.get());
+    }
+
+    public static void trace(Category category, Supplier<String> message) {
+        if (isEnabled(category, Level.Trace)) log(Level.Trace, true, message.get());
+    }
+
+    public static void trace(Category category, String pattern, Object arg) {
+        if (isEnabled(category, Level.Trace))
+            log(Level.Trace, true, format(pattern, arg, null, null));
+    }
+
+    public static void trace(Category category, String pattern, Object arg1, Object arg2) {
+        if (isEnabled(category, Level.Trace))
+            log(Level.Trace, true, format(pattern, arg1, arg2, null));
     }
 
     public static void debug(String message) {
-        log(Level.Debug, true, message);
+        if (isEnabled(Category.General, Level.Debug)) log(Level.Debug, true, message);
+    }
+
+    public static void debug(Supplier<String> message) {
+        if (isEnabled(Category.General, Level.Debug)) log(Level.Debug, true, message.get());
+    }
+
+    public static void debug(Category category, Supplier<String> message) {
+        if (isEnabled(category, Level.Debug)) log(Level.Debug, true, message.get());
+    }
+
+    public static void debug(Category category, String pattern, Object arg) {
+        if (isEnabled(category, Level.Debug))
+            log(Level.Debug, true, format(pattern, arg, null, null));
+    }
+
+    public static void debug(Category category, String pattern, Object arg1, Object arg2) {
+        if (isEnabled(category, Level.Debug))
+            log(Level.Debug, true, format(pattern, arg1, arg2, null));
     }
 
     public static void info(String message) {
-        log(Level.Info, true, message);
+        if (isEnabled(Category.General, Level.Info)) log(Level.Info, true, message);
+    }
+
+    public static void info(Supplier<String> message) {
+        if (isEnabled(Category.General, Level.Info)) log(Level.Info, true, message.get());
+    }
+
+    public static void info(Category category, Supplier<String> message) {
+        if (isEnabled(category, Level.Info)) log(Level.Info, true, message.get());
+    }
+
+    public static void info(Category category, String pattern, Object arg) {
+        if (isEnabled(category, Level.Info))
+            log(Level.Info, true, format(pattern, arg, null, null));
+    }
+
+    public static void info(Category category, String pattern, Object arg1, Object arg2) {
+        if (isEnabled(category, Level.Info))
+            log(Level.Info, true, format(pattern, arg1, arg2, null));
     }
 
     public static void warning(String message) {
-        log(Level.Warning, true, message);
+        if (isEnabled(Category.General, Level.Warning)) log(Level.Warning, true, message);
+    }
+
+    public static void warning(Supplier<String> message) {
+        if (isEnabled(Category.General, Level.Warning)) log(Level.Warning, true, message.get());
+    }
+
+    public static void warning(Category category, Supplier<String> message) {
+        if (isEnabled(category, Level.Warning)) log(Level.Warning, true, message.get());
+    }
+
+    public static void warning(Category category, String pattern, Object arg) {
+        if (isEnabled(category, Level.Warning))
+            log(Level.Warning, true, format(pattern, arg, null, null));
+    }
+
+    public static void warning(Category category, String pattern, Object arg1, Object arg2) {
+        if (isEnabled(category, Level.Warning))
+            log(Level.Warning, true, format(pattern, arg1, arg2, null));
     }
 
     public static void error(String message) {
-        log(Level.Error, true, message);
+        if (isEnabled(Category.General, Level.Error)) log(Level.Error, true, message);
+    }
+
+    public static void error(Supplier<String> message) {
+        if (isEnabled(Category.General, Level.Error)) log(Level.Error, true, message.get());
+    }
+
+    public static void error(Category category, Supplier<String> message) {
+        if (isEnabled(category, Level.Error)) log(Level.Error, true, message.get());
+    }
+
+    public static void error(Category category, String pattern, Object arg) {
+        if (isEnabled(category, Level.Error))
+            log(Level.Error, true, format(pattern, arg, null, null));
     }
 
+    public static void error(Category category, String pattern, Object arg1, Object arg2) {
+        if (isEnabled(category, Level.Error))
+            log(Level.Error, true, format(pattern, arg1, arg2, null));
+    }
+
+    /** Terminal output is part of the interface, so it is never filtered. */
     public static void tui(String message) {
         log(Level.TUI, false, "\t" + message);
     }
 
     public static void audit(String message) {
-        String text =
-                message
-                        + " - "
-                        + LocalDateTime.now()
-                        + " - Initiated by user: "
-                        + Backend.get().getLoggedIn();
-        writeFile(text);
-        log(Level.Audit, true, text);
+        if (isEnabled(Category.General, Level.Audit)) writeAudit(Category.General, null, message);
     }
 
-    public static void auditAnonymous(String message) {
-        log(Level.Audit, true, message);
+    public static void audit(Category category, Supplier<String> message) {
+        if (isEnabled(category, Level.Audit)) writeAudit(category, null, message.get());
     }
 
-    private static void checkDate() {
-        try {
-            if (!log_date.equals(LocalDate.now())) {
-                writer.close();
-                log_date = LocalDate.now();
-                file = new File(log_date + "ActivityLog.log");
-                file.createNewFile();
-                writer = new FileWriter(file, true);
-            }
-        } catch (Exception e) {
-            Log.error("Exception in logger checkDate: " + e);
+    public static void audit(Category category, String pattern, Object arg) {
+        if (isEnabled(category, Level.Audit)) {
+            writeAudit(category, AuditLog.entityOf(arg), format(pattern, arg, null, null));
+        }
+    }
+
+    public static void audit(Category category, String pattern, Object arg1, Object arg2) {
+        if (isEnabled(category, Level.Audit)) {
+            UUID entity = AuditLog.entityOf(arg1);
+            if (entity == null) entity = AuditLog.entityOf(arg2);
+            writeAudit(category, entity, format(pattern, arg1, arg2, null));
+        }
+    }
+
+    public static void audit(
+            Category category, String pattern, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(category, Level.Audit)) {
+            UUID entity = AuditLog.entityOf(arg1);
+            if (entity == null) entity = AuditLog.entityOf(arg2);
+            if (entity == null) entity = AuditLog.entityOf(arg3);
+            writeAudit(category, entity, format(pattern, arg1, arg2, arg3));
         }
     }
 
-    private static void writeFile(String message) {
+    public static void auditAnonymous(String message) {
+        if (isEnabled(Category.General, Level.Audit)) log(Level.Audit, true, message);
+    }
+
+    /**
+     * @param category
+     * @param entity What the record is about, or null.
+     * @param message
+     */
+    private static void writeAudit(Category category, UUID entity, String message) {
+        LocalDateTime now = LocalDateTime.now();
+        Account account = Backend.get().getLoggedIn();
+        String text = message + " - " + now + " - Initiated by user: " + account;
+        writer.offer(
+                levelPrefix(Level.Audit) + text,
+                text,
+                new AuditRecord(
+                        now, account == null ? null : account.getID(), entity, category, message));
+    }
+
+    /**
+     * Searches the structured audit history.
+     *
+     * @param from The earliest time, or null.
+     * @param to The latest time, or null.
+     * @param account An account ID, or null for any account.
+     * @param entity An entity ID, or null for any entity.
+     * @return The most recent matching records, oldest first, or null before {@link #init()}.
+     */
+    public static List<AuditRecord> queryAudit(
+            LocalDateTime from, LocalDateTime to, UUID account, UUID entity) {
+        AuditLog audit_log = writer.getAuditLog();
+        if (audit_log == null) return null;
         try {
-            writer.write(message + "\n");
-            checkDate();
+            return audit_log.query(from, to, account, entity, Config.auditQueryLimit());
         } catch (Exception e) {
-            Log.error("Exception in logger writeFile: " + e);
+            Log.error("Exception in audit query: " + e);
+            return null;
         }
     }
 
+    /**
+     * @return The number of records dropped because the log buffer was full, since startup.
+     */
+    public static long dropped() {
+        return writer.dropped();
+    }
+
     private static void log(Level log_level, boolean show_level, String message) {
-        if (log_level.ordinal() >= LOG_LEVEL.ordinal()) {
-            System.out.println((show_level ? levelPrefix(log_level) : "") + message);
+        writer.offer(show_level ? levelPrefix(log_level) + message : message, null, null);
+    }
+
+    /**
+     * @param pattern
+     * @param arg1 Replaces the first {@code {}}.
+     * @param arg2 Replaces the second {@code {}}.
+     * @param arg3 Replaces the third {@code {}}.
+     */
+    private static String format(String pattern, Object arg1, Object arg2, Object arg3) {
+        StringBuilder text = new StringBuilder(pattern.length() + 32);
+        int start = 0;
+        int index = 0;
+        int found;
+        while (index < 3 && (found = pattern.indexOf("{}", start)) >= 0) {
+            text.append(pattern, start, found).append(index == 0 ? arg1 : index == 1 ? arg2 : arg3);
+            start = found + 2;
+            index++;
+        }
+        return text.append(pattern, start, pattern.length()).toString();
+    }
+
+    private static Level[] initLevels() {
+        Level[] levels = new Level[Category.values().length];
+        for (Category category : Category.values()) {
+            try {
+                levels[category.ordinal()] = Config.logLevel(category);
+            } catch (IllegalArgumentException e) {
+                System.err.println(levelPrefix(Level.Error) + "Invalid log level: " + e);
+                levels[category.ordinal()] = Level.Trace;
+            }
         }
+        return levels;
     }
 
     private static String getCaller() {
@@ -122,7 +331,7 @@ public class Log {
                                         .collect(Collectors.joining("->")));
     }
 
-    private static String levelPrefix(Level log_level) {
+    static String levelPrefix(Level log_level) {
         switch (log_level) {
             case Trace:
                 return "[TRACE]\t";
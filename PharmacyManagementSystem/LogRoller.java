@@ -0,0 +1,146 @@
+package PharmacyManagementSystem;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * {@link LogRoller} owns the activity log directory. The {@link LogWriter} appends to {@code
+ * <date>ActivityLog.log} and hands the file over when the day changes or the file reaches {@link
+ * Config#logMaxFileBytes()}. The roller renames it to a numbered part, compresses the part on its
+ * own thread and deletes the oldest compressed parts beyond {@link Config#logRetentionFiles()}.
+ */
+class LogRoller {
+    private static final String ACTIVE = "ActivityLog.log";
+    private static final String COMPRESSED = ".log.gz";
+    private static final Pattern PART =
+            Pattern.compile("\\d{4}-\\d{2}-\\d{2}ActivityLog\\.\\d{3}\\.log");
+
+    private final File directory;
+    private final int retention;
+    private final ExecutorService compressor;
+
+    /**
+     * @param directory Created when needed.
+     */
+    LogRoller(final String directory) {
+        this.directory = new File(directory);
+        this.directory.mkdirs();
+        this.retention = Config.logRetentionFiles();
+        this.compressor =
+                Executors.newSingleThreadExecutor(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "log-compressor");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    /**
+     * @param date
+     * @return The file the log of that day is appended to.
+     */
+    File activeFile(final LocalDate date) {
+        return new File(this.directory, date + ACTIVE);
+    }
+
+    /**
+     * Rolls the files a previous run left behind: active files of other days and parts that were
+     * not compressed yet.
+     *
+     * @param today
+     */
+    void recover(final LocalDate today) {
+        File[] files = this.directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(ACTIVE)) {
+                // The LogWriter is still appending to the file of today.
+                if (file.equals(activeFile(today))) continue;
+                try {
+                    roll(file, LocalDate.parse(name.substring(0, name.length() - ACTIVE.length())));
+                } catch (DateTimeParseException e) {
+                    System.err.println(
+                            Log.levelPrefix(Level.Error) + "Ignoring activity log " + file + ".");
+                }
+            } else if (PART.matcher(name).matches()) {
+                this.compressor.execute(() -> compress(file));
+            }
+        }
+    }
+
+    /**
+     * Renames a finished active file to the next free part of its day and compresses it in the
+     * background.
+     *
+     * @param file
+     * @param date
+     */
+    void roll(final File file, final LocalDate date) {
+        File part;
+        int number = 0;
+        do {
+            part = new File(this.directory, String.format("%sActivityLog.%03d.log", date, number));
+            number++;
+        } while (part.exists() || new File(part.getPath() + ".gz").exists());
+
+        if (!file.renameTo(part)) {
+            System.err.println(
+                    Log.levelPrefix(Level.Error) + "Cannot roll activity log " + file + ".");
+            return;
+        }
+        File rolled = part;
+        this.compressor.execute(() -> compress(rolled));
+    }
+
+    /** Waits for pending compressions. */
+    void close() {
+        this.compressor.shutdown();
+        try {
+            this.compressor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void compress(final File file) {
+        File target = new File(file.getPath() + ".gz");
+        File temporary = new File(file.getPath() + ".gz.tmp");
+        try (InputStream in = new FileInputStream(file);
+                OutputStream out = new GZIPOutputStream(new FileOutputStream(temporary), 1 << 16)) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            System.err.println(
+                    Log.levelPrefix(Level.Error)
+                            + "Cannot compress activity log "
+                            + file
+                            + ": "
+                            + e);
+            temporary.delete();
+            return;
+        }
+        if (temporary.renameTo(target)) file.delete();
+        retain();
+    }
+
+    /** Deletes the oldest compressed parts beyond the retention count. */
+    private void retain() {
+        File[] parts = this.directory.listFiles((dir, name) -> name.endsWith(COMPRESSED));
+        if (parts == null || parts.length <= this.retention) return;
+        // Names start with the date and end with a padded part number, so they sort by age.
+        Arrays.sort(parts);
+        for (int i = 0; i < parts.length - this.retention; i++) parts[i].delete();
+    }
+}
@@ -0,0 +1,301 @@
+package PharmacyManagementSystem;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link LogWriter} takes log records off the calling thread. {@link Log} offers each record to a
+ * {@link RingBuffer}, and one consumer thread drains it in batches: a batch is printed to the
+ * console in one write, and its file lines go to the daily {@code ActivityLog.log} through a buffer
+ * that is flushed every {@link Config#logFlushMillis()} and synced to disk every {@link
+ * Config#logSyncMillis()}. The date is checked once per batch instead of once per line, and the
+ * {@link LogRoller} takes the file over when the day changes or it grows past its size cap.
+ *
+ * <p>When the buffer is full, producers either wait for room or drop the record, depending on
+ * {@link Config#logDropWhenFull()}. Dropped records are counted and reported by the consumer.
+ */
+class LogWriter {
+    /**
+     * @param console The console line, or null.
+     * @param file The activity log line, or null.
+     * @param audit The structured audit record, or null.
+     */
+    private record Entry(String console, String file, AuditRecord audit) {}
+
+    private final RingBuffer<Entry> ring;
+    private final boolean drop_when_full;
+    private final int batch_size;
+    private final long flush_nanos;
+    private final long sync_nanos;
+    private final AtomicLong dropped;
+    private final Thread thread;
+    private volatile boolean file_enabled;
+    private volatile AuditLog audit_log;
+    private volatile LogRoller roller;
+    private volatile boolean closing;
+    private volatile boolean closed;
+
+    // Consumer thread only.
+    private final StringBuilder console;
+    private LocalDate batch_date;
+    private LocalDate log_date;
+    private File log_file;
+    private long log_bytes;
+    private final long max_file_bytes;
+    private FileOutputStream stream;
+    private BufferedWriter writer;
+    private boolean unflushed;
+    private boolean unsynced;
+    private long last_flush;
+    private long last_sync;
+    private long reported_dropped;
+    private long batch_chars;
+
+    LogWriter() {
+        this.ring = new RingBuffer<>(Config.logBufferSize());
+        this.drop_when_full = Config.logDropWhenFull();
+        this.batch_size = Config.logBatchSize();
+        this.flush_nanos = TimeUnit.MILLISECONDS.toNanos(Config.logFlushMillis());
+        this.sync_nanos = TimeUnit.MILLISECONDS.toNanos(Config.logSyncMillis());
+        this.max_file_bytes = Config.logMaxFileBytes();
+        this.dropped = new AtomicLong();
+        this.console = new StringBuilder();
+        this.thread = new Thread(this::run, "log-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "log-shutdown"));
+    }
+
+    /**
+     * Starts writing file lines to the daily activity log and audit records to the {@link
+     * AuditLog}, earlier ones are discarded.
+     */
+    void openFile() {
+        try {
+            this.audit_log = new AuditLog(Config.auditDirectory());
+        } catch (IOException e) {
+            System.err.println(Log.levelPrefix(Level.Error) + "Cannot open audit log: " + e);
+        }
+        this.roller = new LogRoller(Config.logDirectory());
+        this.roller.recover(LocalDate.now());
+        this.file_enabled = true;
+    }
+
+    /**
+     * @return The audit log, or null before {@link #openFile()}.
+     */
+    AuditLog getAuditLog() {
+        return this.audit_log;
+    }
+
+    /**
+     * @param console The console line, or null.
+     * @param file The activity log line, or null.
+     * @param audit The structured audit record, or null.
+     */
+    void offer(final String console, final String file, final AuditRecord audit) {
+        if (this.closed) {
+            writeNow(console, file);
+            return;
+        }
+
+        Entry entry = new Entry(console, file, audit);
+        if (this.ring.offer(entry)) return;
+
+        LogBufferFullEvent event = new LogBufferFullEvent();
+        event.begin();
+        while (!this.ring.offer(entry)) {
+            if (this.drop_when_full) {
+                this.dropped.incrementAndGet();
+                event.dropped = true;
+                break;
+            }
+            LockSupport.unpark(this.thread);
+            LockSupport.parkNanos(100_000);
+        }
+        event.commit();
+    }
+
+    /**
+     * @return The number of records dropped because the buffer was full, since startup.
+     */
+    long dropped() {
+        return this.dropped.get();
+    }
+
+    /** Writes out everything offered so far, then stops the consumer and closes the file. */
+    void close() {
+        if (this.closing) return;
+        this.closing = true;
+        LockSupport.unpark(this.thread);
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            this.batch_date = LocalDate.now();
+            LogWriteEvent event = new LogWriteEvent();
+            event.begin();
+            this.batch_chars = 0;
+            int drained = this.ring.drain(this::append, this.batch_size);
+            if (drained > 0) {
+                writeBatch();
+                if (event.shouldCommit()) {
+                    event.records = drained;
+                    event.characters = this.batch_chars;
+                    event.commit();
+                }
+            }
+            maintainFile(System.nanoTime());
+
+            if (drained == 0) {
+                if (this.closing && this.ring.isEmpty()) break;
+                LockSupport.parkNanos(this.closing ? 100_000 : this.flush_nanos);
+            }
+        }
+
+        // Records offered before producers saw the flag still arrive.
+        this.closed = true;
+        while (this.ring.drain(this::append, this.batch_size) > 0) {}
+        writeBatch();
+        closeFile();
+        if (this.roller != null) this.roller.close();
+        if (this.audit_log != null) {
+            try {
+                this.audit_log.close();
+            } catch (IOException e) {
+                System.err.println(
+                        Log.levelPrefix(Level.Error) + "Exception in audit log close: " + e);
+            }
+        }
+    }
+
+    private void append(final Entry entry) {
+        if (entry.console() != null) this.console.append(entry.console()).append('\n');
+        if (entry.file() != null && this.file_enabled) {
+            try {
+                if (this.writer != null && !this.log_date.equals(this.batch_date)) rollFile();
+                if (this.writer == null) openDay();
+                this.writer.write(entry.file());
+                this.writer.write('\n');
+                // Counts characters, which is close enough to bytes for a size cap.
+                this.log_bytes += entry.file().length() + 1;
+                this.batch_chars += entry.file().length() + 1;
+                if (this.log_bytes >= this.max_file_bytes) rollFile();
+                this.unflushed = true;
+                this.unsynced = true;
+            } catch (IOException e) {
+                System.err.println(Log.levelPrefix(Level.Error) + "Exception in log writer: " + e);
+            }
+        }
+        if (entry.audit() != null && this.audit_log != null) {
+            try {
+                this.audit_log.append(entry.audit());
+                this.unflushed = true;
+                this.unsynced = true;
+            } catch (IOException e) {
+                System.err.println(Log.levelPrefix(Level.Error) + "Exception in audit log: " + e);
+            }
+        }
+    }
+
+    private void writeBatch() {
+        reportDropped();
+        if (this.console.length() == 0) return;
+        System.out.print(this.console);
+        System.out.flush();
+        this.console.setLength(0);
+    }
+
+    private void reportDropped() {
+        long total = this.dropped.get();
+        long dropped = total - this.reported_dropped;
+        this.reported_dropped = total;
+        if (dropped > 0) {
+            this.console
+                    .append(Log.levelPrefix(Level.Warning))
+                    .append("Log buffer full, dropped ")
+                    .append(dropped)
+                    .append(" records.\n");
+        }
+    }
+
+    private void maintainFile(final long now) {
+        try {
+            if (this.unflushed && now - this.last_flush >= this.flush_nanos) {
+                if (this.writer != null) this.writer.flush();
+                if (this.audit_log != null) this.audit_log.flush();
+                this.unflushed = false;
+                this.last_flush = now;
+            }
+            if (this.unsynced && !this.unflushed && now - this.last_sync >= this.sync_nanos) {
+                LogSyncEvent event = new LogSyncEvent();
+                event.begin();
+                if (this.stream != null) this.stream.getChannel().force(false);
+                if (this.audit_log != null) this.audit_log.sync();
+                event.commit();
+                this.unsynced = false;
+                this.last_sync = now;
+            }
+        } catch (IOException e) {
+            System.err.println(
+                    Log.levelPrefix(Level.Error) + "Exception in log writer flush: " + e);
+        }
+    }
+
+    private void openDay() throws IOException {
+        this.log_date = this.batch_date;
+        this.log_file = this.roller.activeFile(this.log_date);
+        this.log_bytes = this.log_file.length();
+        this.stream = new FileOutputStream(this.log_file, true);
+        this.writer =
+                new BufferedWriter(
+                        new OutputStreamWriter(this.stream, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    /** Closes the active file and hands it to the {@link LogRoller}. */
+    private void rollFile() {
+        closeFile();
+        this.roller.roll(this.log_file, this.log_date);
+    }
+
+    private void closeFile() {
+        if (this.writer == null) return;
+        try {
+            this.writer.flush();
+            this.stream.getChannel().force(false);
+            this.writer.close();
+        } catch (IOException e) {
+            System.err.println(
+                    Log.levelPrefix(Level.Error) + "Exception in log writer close: " + e);
+        }
+        this.writer = null;
+        this.stream = null;
+        this.unflushed = false;
+        this.unsynced = false;
+    }
+
+    /** Used once the consumer has stopped, so late records are not lost. */
+    private synchronized void writeNow(final String console, final String file) {
+        if (console != null) System.out.println(console);
+        if (file == null || !this.file_enabled) return;
+        try (FileOutputStream out =
+                new FileOutputStream(this.roller.activeFile(LocalDate.now()), true)) {
+            out.write((file + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println(Log.levelPrefix(Level.Error) + "Exception in log writer: " + e);
+        }
+    }
+}
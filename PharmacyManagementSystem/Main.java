@@ -1,13 +1,9 @@
 package PharmacyManagementSystem;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.ArrayList;
 import java.util.InputMismatchException;
-import java.util.List;
 import java.util.Scanner;
 
 public class Main {
@@ -104,6 +100,14 @@ public class Main {
                 return TUI.purchaseStock(scanner);
             case PickupPrescription:
                 return TUI.pickupPrescription(scanner);
+            case GetAudit:
+                return TUI.getAudit(scanner);
+            case GetMetrics:
+                return Response.Ok;
+            case SearchStock:
+                return TUI.searchStock(scanner);
+            case FindCustomer:
+                return TUI.findCustomer(scanner);
         }
 
         Log.error("Invalid request data.");
@@ -149,22 +153,22 @@ public class Main {
         return Response.NotFound;
     }
 
-    private static void request(Scanner scanner, API api, int input) {
+    private static void request(Scanner scanner, API api, Session session, int input) {
         if (input > Request.values().length - 1 || input < 0) {
             throw new IllegalArgumentException("Invalid request.");
         }
 
         Request request = Request.values()[input];
         Object data = requestData(scanner, request);
-        Log.trace("DATA: " + data);
+        Log.trace(Category.Requests, "DATA: {}", data);
 
-        Response response = api.receive(request, data);
-        Log.audit("Request " + request + " made with data: " + data);
+        Response response = api.receive(session, request, data);
+        Log.audit(Category.Requests, "Request {} made with data: {}", request, data);
 
         data = responseData(scanner, response);
-        Log.audit("Response " + response + " received with data: " + data);
+        Log.audit(Category.Requests, "Response {} received with data: {}", response, data);
 
-        api.send(response, data);
+        api.send(session, response, data);
     }
 
     int input(Scanner scanner) {
@@ -181,132 +185,38 @@ public class Main {
         }
     }
 
-    // No time for clean csv reading :(
-
-    public static void initAccount() {
-        Backend backend = Backend.get();
-        String file = "accounts.csv";
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                String[] vals = line.split(",");
-                LocalDate date = LocalDate.parse(vals[0]);
-                LocalDateTime time = LocalDateTime.of(date, LocalTime.now());
-                String name = vals[1];
-                String login = vals[2];
-                PermissionLevel permissions = PermissionLevel.valueOf(vals[3]);
-                boolean log = Boolean.parseBoolean(vals[4]);
-
-                Account account = new Account(time, name, login, permissions, log);
-                backend.getAccounts().put(account.getID(), account);
-            }
-        } catch (Exception e) {
-            Log.error("Init csv reader error: " + e);
-        }
-    }
-
-    public static void initStock() {
-        Backend backend = Backend.get();
-        String file = "stock.csv";
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-
-            List<Stock> list = new ArrayList<>();
-            while ((line = reader.readLine()) != null) {
-                String[] vals = line.split(",");
-                int quantity = Integer.parseInt(vals[0]);
-                double price = Double.parseDouble(vals[1]);
-                String name = vals[2];
-                Stock stock = new Stock(quantity, price, name, null);
-                list.add(stock);
-            }
-            Order order = new Order(list);
-            backend.inventory.addOrder(order);
-            order.setShipmentDate(LocalDateTime.now());
-        } catch (Exception e) {
-            Log.error("Init csv reader error: " + e);
-        }
-    }
+    public static void main(String[] args) {
+        Log.init();
 
-    public static void initDrug() {
         Backend backend = Backend.get();
-        String file = "drugs.csv";
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-
-            List<Stock> list = new ArrayList<>();
-            while ((line = reader.readLine()) != null) {
-                String[] vals = line.split(",");
-                LocalDate expirationDate = LocalDate.parse(vals[0]);
-                LocalDateTime expirationDateTime =
-                        LocalDateTime.of(expirationDate, LocalTime.now());
-                int quantity = Integer.parseInt(vals[1]);
-                double price = Double.parseDouble(vals[2]);
-                String name = vals[3];
-                boolean isControlled = Boolean.parseBoolean(vals[4]);
-                String drugName = vals[5];
-
-                Drug drug =
-                        new Drug(
-                                quantity,
-                                price,
-                                name,
-                                null,
-                                isControlled,
-                                drugName,
-                                expirationDateTime);
-
-                list.add(drug);
-            }
-            Order order = new Order(list);
-            order.setShipmentDate(LocalDateTime.now());
-            backend.inventory.addOrder(order);
-        } catch (Exception e) {
-            Log.error("Init csv reader error: " + e);
+        Journal journal = new Journal(Config.journalDirectory());
+        API api = new API(journal);
+        backend.setJournal(journal);
+
+        if (!journal.recover(api)) {
+            Log.audit("Initializing backend data.");
+            BulkImport.customers("customers.csv");
+            BulkImport.stock("stock.csv");
+            BulkImport.drugs("drugs.csv");
+            BulkImport.accounts("accounts.csv");
+            journal.checkpoint(backend);
+            Log.audit("Finished initializing backend.");
         }
-    }
 
-    public static void initCustomers() {
-        Backend backend = Backend.get();
-        String file = "customers.csv";
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                String[] vals = line.split(",");
-                LocalDate date = LocalDate.parse(vals[0]);
-                LocalDateTime time = LocalDateTime.of(date, LocalTime.now());
-                String name = vals[1];
-                Customer customer = new Customer(time, name);
-                backend.getCustomers().put(customer.getID(), customer);
+        backend.startMaintenance();
+        Server server = null;
+        if (Config.serverEnabled()) {
+            try {
+                server = new Server(api, Config.serverAddress(), Config.serverPort());
+            } catch (Exception e) {
+                Log.error("Cannot start server, only the terminal is available: " + e);
             }
-        } catch (Exception e) {
-            Log.error("Init csv reader error: " + e);
         }
-    }
-
-    public static void main(String[] args) {
-        Log.init();
-
-        Backend backend = Backend.get();
-
-        Log.audit("Initializing backend data.");
-        initCustomers();
-        initStock();
-        initDrug();
-        initAccount();
-        Log.audit("Finished initializing backend.");
-
-        API api = new API();
 
         tui("Welcome to the Pharmacy Management System.");
 
         Scanner scanner = new Scanner(System.in);
+        Session session = api.connect();
 
         requests();
         // Must be valid or system will shutdown.
@@ -315,8 +225,11 @@ public class Main {
 
         while (request != -1) {
             try {
-                backend.update();
-                request(scanner, api, request);
+                if (!session.isOpen()) {
+                    tui("Session expired.");
+                    session = api.connect();
+                }
+                request(scanner, api, session, request);
             } catch (Exception e) {
                 Log.error("Exception in Main: " + e.getMessage());
                 e.printStackTrace();
@@ -336,6 +249,11 @@ public class Main {
         }
 
         scanner.close();
+        api.disconnect(session);
+        if (server != null) server.close();
+        backend.stopMaintenance();
+        journal.checkpoint(backend);
+        journal.close();
         Log.clean();
     }
 }
@@ -0,0 +1,238 @@
+package PharmacyManagementSystem;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * {@link Maintenance} runs the periodic {@link Backend} jobs on a timer thread, so requests never
+ * pay for them. Each job has its own period and runs while holding the exclusive side of the
+ * backend lock, so it sees a consistent view of state, unless it was added with {@link
+ * #addUnlocked} because it only reads what is safe to read concurrently. A run that takes longer
+ * than its period is counted as an overrun, and the next run starts as soon as it finishes.
+ */
+class Maintenance {
+    /** One named job and the durations of its runs. */
+    static class Job {
+        private final String name;
+        private final long period_millis;
+        private final Runnable task;
+        private final boolean locked;
+
+        private long runs;
+        private long overruns;
+        private long failures;
+        private Duration last;
+        private Duration max;
+        private Duration total;
+
+        private Job(
+                final String name,
+                final long period_millis,
+                final Runnable task,
+                final boolean locked) {
+            this.name = name;
+            this.period_millis = period_millis;
+            this.task = task;
+            this.locked = locked;
+            this.last = Duration.ZERO;
+            this.max = Duration.ZERO;
+            this.total = Duration.ZERO;
+        }
+
+        String getName() {
+            return this.name;
+        }
+
+        long getPeriodMillis() {
+            return this.period_millis;
+        }
+
+        synchronized long runs() {
+            return this.runs;
+        }
+
+        /**
+         * @return The number of runs that took longer than the period.
+         */
+        synchronized long overruns() {
+            return this.overruns;
+        }
+
+        synchronized long failures() {
+            return this.failures;
+        }
+
+        synchronized Duration lastDuration() {
+            return this.last;
+        }
+
+        synchronized Duration maxDuration() {
+            return this.max;
+        }
+
+        synchronized Duration averageDuration() {
+            return this.runs == 0 ? Duration.ZERO : this.total.dividedBy(this.runs);
+        }
+
+        private synchronized void record(final Duration duration, final boolean failed) {
+            this.runs++;
+            if (failed) this.failures++;
+            if (duration.toMillis() > this.period_millis) this.overruns++;
+            this.last = duration;
+            this.total = this.total.plus(duration);
+            if (duration.compareTo(this.max) > 0) this.max = duration;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "["
+                    + this.name
+                    + ": Period: "
+                    + this.period_millis
+                    + "ms, Runs: "
+                    + this.runs
+                    + ", Overruns: "
+                    + this.overruns
+                    + ", Failures: "
+                    + this.failures
+                    + ", Last: "
+                    + this.last
+                    + ", Average: "
+                    + averageDuration()
+                    + ", Max: "
+                    + this.max
+                    + "]";
+        }
+    }
+
+    private final Lock lock;
+    private final List<Job> jobs;
+    private ScheduledExecutorService timer;
+
+    /**
+     * @param lock Held around every run of a job added with {@link #add}.
+     */
+    Maintenance(final Lock lock) {
+        this.lock = lock;
+        this.jobs = new ArrayList<>();
+    }
+
+    /**
+     * Adds a job. Jobs added after {@link #start()} are only run by {@link #runAll()}.
+     *
+     * @param name
+     * @param period_millis
+     * @param task
+     */
+    void add(final String name, final long period_millis, final Runnable task) {
+        this.jobs.add(new Job(name, period_millis, task, true));
+    }
+
+    /**
+     * Adds a job that runs without the backend lock, for work such as file I/O that would otherwise
+     * block every request.
+     *
+     * @param name
+     * @param period_millis
+     * @param task
+     */
+    void addUnlocked(final String name, final long period_millis, final Runnable task) {
+        this.jobs.add(new Job(name, period_millis, task, false));
+    }
+
+    /** Schedules every job at its period on the timer thread. */
+    synchronized void start() {
+        if (this.timer != null) return;
+        this.timer =
+                Executors.newSingleThreadScheduledExecutor(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "maintenance");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        for (Job job : this.jobs) {
+            this.timer.scheduleWithFixedDelay(
+                    () -> run(job), job.period_millis, job.period_millis, TimeUnit.MILLISECONDS);
+        }
+        Log.info(Category.Maintenance, "Maintenance started: {} jobs.", this.jobs.size());
+    }
+
+    /** Stops the timer and waits for a running job. */
+    synchronized void stop() {
+        if (this.timer == null) return;
+        this.timer.shutdown();
+        try {
+            this.timer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.timer = null;
+    }
+
+    /** Runs every job once on the calling thread, in the order they were added. */
+    void runAll() {
+        for (Job job : this.jobs) run(job);
+    }
+
+    /**
+     * Runs one job on the calling thread.
+     *
+     * @param name
+     * @return False when there is no job with that name.
+     */
+    boolean run(final String name) {
+        for (Job job : this.jobs) {
+            if (job.name.equals(name)) {
+                run(job);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The jobs with their metrics.
+     */
+    List<Job> getJobs() {
+        return this.jobs;
+    }
+
+    @Override
+    public String toString() {
+        return this.jobs.toString();
+    }
+
+    private void run(final Job job) {
+        boolean failed = false;
+        long requested = System.nanoTime();
+        long start;
+        MaintenanceJobEvent event = new MaintenanceJobEvent();
+        if (job.locked) this.lock.lock();
+        try {
+            start = System.nanoTime();
+            event.begin();
+            try {
+                job.task.run();
+            } catch (Exception e) {
+                failed = true;
+                Log.error("Exception in maintenance job " + job.name + ": " + e);
+            }
+            event.end();
+        } finally {
+            if (job.locked) this.lock.unlock();
+        }
+        job.record(Duration.ofNanos(System.nanoTime() - start), failed);
+
+        if (event.shouldCommit()) {
+            event.job = job.name;
+            event.lock_wait = start - requested;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+}
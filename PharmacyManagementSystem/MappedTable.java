@@ -0,0 +1,358 @@
+package PharmacyManagementSystem;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * A {@link MappedTable} is a {@link Map} over a binary table file loaded with {@link
+ * FileChannel#map}. Opening a table only maps the file, records are decoded with a {@link
+ * TableCodec} the first time their key is accessed and kept in an in-memory overlay, which also
+ * holds every later insert. Removed file records are remembered as tombstones.
+ *
+ * <p>Lookups may run on several threads at once, as long as writes are excluded by the {@link
+ * Backend} lock. A record decoded by two readers at the same time keeps the first copy.
+ *
+ * <p>The file layout is {@code [int magic][int version][int count]}, followed by {@code count}
+ * index slots of {@code [long msb][long lsb][int offset][int length]} sorted by key, followed by
+ * the records. Lookups binary search the mapped index, so opening a table is constant time no
+ * matter how many records it holds.
+ */
+public class MappedTable<V> extends AbstractMap<UUID, V> {
+    private static final int MAGIC = 0x504D5354;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+    private static final int SLOT_SIZE = 2 * Long.BYTES + 2 * Integer.BYTES;
+
+    private final TableCodec<V> codec;
+    private final UUIDMap<V> overlay;
+    private final Set<UUID> removed;
+    private ByteBuffer mapped;
+    private int count;
+    private int size;
+
+    private MappedTable(final ByteBuffer mapped, final TableCodec<V> codec) {
+        this.mapped = mapped;
+        this.codec = codec;
+        this.overlay = new UUIDMap<>();
+        this.removed = ConcurrentHashMap.newKeySet();
+        this.count = mapped.getInt(2 * Integer.BYTES);
+        this.size = this.count;
+    }
+
+    /**
+     * @param path
+     * @param codec
+     * @return A lazily decoded view of the table file.
+     */
+    public static <V> MappedTable<V> open(final Path path, final TableCodec<V> codec)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(Integer.BYTES) != VERSION) {
+                throw new IOException("Not a table file: " + path);
+            }
+            return new MappedTable<>(mapped, codec);
+        }
+    }
+
+    /**
+     * Writes a table file. Records of a {@link MappedTable} that were never decoded are copied byte
+     * for byte instead of being decoded and encoded again.
+     *
+     * @param path
+     * @param table
+     * @param codec
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> void write(
+            final Path path, final Map<UUID, V> table, final TableCodec<V> codec)
+            throws IOException {
+        MappedTable<V> source = table instanceof MappedTable ? (MappedTable<V>) table : null;
+
+        List<UUID> keys = new ArrayList<>(source == null ? table.keySet() : source.liveKeys());
+        keys.sort(MappedTable::compare);
+        int records = keys.size();
+        long data_start = HEADER_SIZE + (long) records * SLOT_SIZE;
+
+        try (FileChannel channel =
+                FileChannel.open(
+                        path,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(data_start);
+            DataOutputStream out =
+                    new DataOutputStream(
+                            new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+            ByteBuffer index = ByteBuffer.allocate((int) data_start);
+            index.putInt(MAGIC).putInt(VERSION).putInt(records);
+            for (UUID key : keys) {
+                long offset = data_start + out.size();
+                int slot = source == null ? -1 : source.rawSlot(key);
+                if (slot >= 0) {
+                    out.write(source.rawRecord(slot));
+                } else {
+                    codec.write(out, table.get(key));
+                }
+                if (data_start + out.size() >= Integer.MAX_VALUE) {
+                    throw new IOException("Table file exceeds 2GB: " + path);
+                }
+                index.putLong(key.getMostSignificantBits());
+                index.putLong(key.getLeastSignificantBits());
+                index.putInt((int) offset);
+                index.putInt((int) (data_start + out.size() - offset));
+            }
+            out.flush();
+            index.flip();
+            channel.write(index, 0);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Visits every live record, handing undecoded records over as raw bytes.
+     *
+     * @param undecoded Receives the key and a buffer positioned at each undecoded record.
+     * @param decoded Receives each value that was already decoded or inserted.
+     */
+    public void scan(final BiConsumer<UUID, ByteBuffer> undecoded, final Consumer<V> decoded) {
+        for (int slot = 0; slot < this.count; slot++) {
+            UUID key = keyAt(slot);
+            if (this.overlay.containsKey(key) || this.removed.contains(key)) continue;
+            ByteBuffer record = this.mapped.duplicate();
+            record.position(this.mapped.getInt(HEADER_SIZE + slot * SLOT_SIZE + 2 * Long.BYTES));
+            undecoded.accept(key, record);
+        }
+        for (V value : this.overlay.values()) decoded.accept(value);
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        if (!(key instanceof UUID)) return false;
+        if (this.overlay.containsKey(key)) return true;
+        return !this.removed.contains(key) && find((UUID) key) >= 0;
+    }
+
+    @Override
+    public V get(final Object key) {
+        if (!(key instanceof UUID)) return null;
+        V value = this.overlay.get(key);
+        if (value != null || this.removed.contains(key)) return value;
+
+        int slot = find((UUID) key);
+        if (slot < 0) return null;
+        value = decode(slot);
+        V raced = this.overlay.putIfAbsent((UUID) key, value);
+        return raced == null ? value : raced;
+    }
+
+    @Override
+    public V put(final UUID key, final V value) {
+        V previous = get(key);
+        this.removed.remove(key);
+        this.overlay.put(key, value);
+        if (previous == null) this.size++;
+        return previous;
+    }
+
+    @Override
+    public V remove(final Object key) {
+        V previous = get(key);
+        if (previous == null) return null;
+        this.overlay.remove(key);
+        if (find((UUID) key) >= 0) this.removed.add((UUID) key);
+        this.size--;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        this.overlay.clear();
+        this.removed.clear();
+        this.mapped = ByteBuffer.allocate(HEADER_SIZE);
+        this.count = 0;
+        this.size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<UUID, V>> entrySet() {
+        return new AbstractSet<Map.Entry<UUID, V>>() {
+            @Override
+            public int size() {
+                return MappedTable.this.size;
+            }
+
+            @Override
+            public Iterator<Map.Entry<UUID, V>> iterator() {
+                return new EntryIterator();
+            }
+        };
+    }
+
+    /** Walks the file records in key order, then the keys that only exist in the overlay. */
+    private class EntryIterator implements Iterator<Map.Entry<UUID, V>> {
+        private int slot = 0;
+        private Iterator<UUID> inserted;
+        private UUID next;
+        private UUID last;
+
+        @Override
+        public boolean hasNext() {
+            while (this.next == null) {
+                if (this.slot < count) {
+                    UUID key = keyAt(this.slot++);
+                    if (!removed.contains(key)) this.next = key;
+                    continue;
+                }
+                if (this.inserted == null) {
+                    List<UUID> keys = new ArrayList<>();
+                    for (UUID key : overlay.keySet()) if (find(key) < 0) keys.add(key);
+                    this.inserted = keys.iterator();
+                }
+                if (!this.inserted.hasNext()) return false;
+                this.next = this.inserted.next();
+            }
+            return true;
+        }
+
+        @Override
+        public Map.Entry<UUID, V> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            this.last = this.next;
+            this.next = null;
+            return new LazyEntry(this.last);
+        }
+
+        @Override
+        public void remove() {
+            if (this.last == null) throw new IllegalStateException();
+            MappedTable.this.remove(this.last);
+            this.last = null;
+        }
+    }
+
+    /** Decodes its value only when asked, so walking {@link #keySet()} never decodes records. */
+    private class LazyEntry implements Map.Entry<UUID, V> {
+        private final UUID key;
+
+        LazyEntry(final UUID key) {
+            this.key = key;
+        }
+
+        @Override
+        public UUID getKey() {
+            return this.key;
+        }
+
+        @Override
+        public V getValue() {
+            return get(this.key);
+        }
+
+        @Override
+        public V setValue(final V value) {
+            return put(this.key, value);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) other;
+            return this.key.equals(entry.getKey()) && getValue().equals(entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return this.key.hashCode() ^ getValue().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return this.key + "=" + getValue();
+        }
+    }
+
+    private List<UUID> liveKeys() {
+        List<UUID> keys = new ArrayList<>(this.size);
+        for (int slot = 0; slot < this.count; slot++) {
+            UUID key = keyAt(slot);
+            if (!this.removed.contains(key)) keys.add(key);
+        }
+        for (UUID key : this.overlay.keySet()) if (find(key) < 0) keys.add(key);
+        return keys;
+    }
+
+    /**
+     * @return The file slot of a record that was never decoded, or -1.
+     */
+    private int rawSlot(final UUID key) {
+        if (this.overlay.containsKey(key) || this.removed.contains(key)) return -1;
+        return find(key);
+    }
+
+    private byte[] rawRecord(final int slot) {
+        int base = HEADER_SIZE + slot * SLOT_SIZE;
+        byte[] record = new byte[this.mapped.getInt(base + 2 * Long.BYTES + Integer.BYTES)];
+        this.mapped.get(this.mapped.getInt(base + 2 * Long.BYTES), record);
+        return record;
+    }
+
+    private V decode(final int slot) {
+        int base = HEADER_SIZE + slot * SLOT_SIZE;
+        ByteBuffer record = this.mapped.duplicate();
+        record.position(this.mapped.getInt(base + 2 * Long.BYTES));
+        return this.codec.read(record);
+    }
+
+    private UUID keyAt(final int slot) {
+        int base = HEADER_SIZE + slot * SLOT_SIZE;
+        return new UUID(this.mapped.getLong(base), this.mapped.getLong(base + Long.BYTES));
+    }
+
+    private int find(final UUID key) {
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        int low = 0;
+        int high = this.count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int base = HEADER_SIZE + middle * SLOT_SIZE;
+            int order = Long.compare(this.mapped.getLong(base), msb);
+            if (order == 0) order = Long.compare(this.mapped.getLong(base + Long.BYTES), lsb);
+            if (order < 0) low = middle + 1;
+            else if (order > 0) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    private static int compare(final UUID a, final UUID b) {
+        int order = Long.compare(a.getMostSignificantBits(), b.getMostSignificantBits());
+        if (order != 0) return order;
+        return Long.compare(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+}
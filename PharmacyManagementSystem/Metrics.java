@@ -0,0 +1,286 @@
+package PharmacyManagementSystem;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * {@link Metrics} counts what the {@link API} does: a latency histogram per {@link Request}, a
+ * counter per {@link Response}, and gauges such as table sizes that are read when a report is
+ * built. Recording takes no lock and allocates nothing, and every histogram has the same fixed
+ * size, so it is always on.
+ *
+ * <p>{@link Request#GetMetrics} reports everything since startup. {@link #dump()} appends what
+ * happened since the previous dump to {@code <date>Metrics.log} in {@link Config#logDirectory()},
+ * so the latency of the last interval can be watched while the store is open.
+ */
+class Metrics {
+    /**
+     * Counts latencies in log-linear buckets: exact below 64ns, then 32 buckets per power of two,
+     * so a value is reported within 1/32 of what was recorded. Values above {@link #MAX_NANOS} are
+     * counted in the last bucket.
+     */
+    static class Histogram {
+        private static final int SUB_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int MAX_BITS = 36;
+        static final long MAX_NANOS = (1L << MAX_BITS) - 1;
+        static final int BUCKETS = (MAX_BITS - SUB_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts;
+        private final AtomicLong total_nanos;
+
+        Histogram() {
+            this.counts = new AtomicLongArray(BUCKETS);
+            this.total_nanos = new AtomicLong();
+        }
+
+        /**
+         * @param nanos
+         */
+        void record(final long nanos) {
+            long value = Math.max(0, Math.min(nanos, MAX_NANOS));
+            this.counts.incrementAndGet(bucket(value));
+            this.total_nanos.addAndGet(value);
+        }
+
+        /**
+         * @return A copy of the counts, not atomic with respect to concurrent records.
+         */
+        Snapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) counts[i] = this.counts.get(i);
+            return new Snapshot(counts, this.total_nanos.get());
+        }
+
+        static int bucket(final long value) {
+            if (value < 2 * SUB_BUCKETS) return (int) value;
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+            return (shift << SUB_BITS) + (int) (value >>> shift);
+        }
+
+        /**
+         * @param bucket
+         * @return The highest value counted in {@code bucket}.
+         */
+        static long highestValue(final int bucket) {
+            if (bucket < 2 * SUB_BUCKETS) return bucket;
+            int shift = (bucket >>> SUB_BITS) - 1;
+            long sub_bucket = (bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+            return ((sub_bucket + 1) << shift) - 1;
+        }
+    }
+
+    /** The counts of a {@link Histogram} at one point in time. */
+    static class Snapshot {
+        private final long[] counts;
+        private final long total_nanos;
+        private final long count;
+
+        private Snapshot(final long[] counts, final long total_nanos) {
+            this.counts = counts;
+            this.total_nanos = total_nanos;
+            long count = 0;
+            for (long bucket : counts) count += bucket;
+            this.count = count;
+        }
+
+        /**
+         * @param previous An earlier snapshot of the same histogram.
+         * @return What was recorded between {@code previous} and this snapshot.
+         */
+        Snapshot minus(final Snapshot previous) {
+            long[] counts = new long[Histogram.BUCKETS];
+            for (int i = 0; i < Histogram.BUCKETS; i++) {
+                counts[i] = this.counts[i] - previous.counts[i];
+            }
+            return new Snapshot(counts, this.total_nanos - previous.total_nanos);
+        }
+
+        long count() {
+            return this.count;
+        }
+
+        long meanNanos() {
+            return this.count == 0 ? 0 : this.total_nanos / this.count;
+        }
+
+        /**
+         * @param percentile Between 0 and 100.
+         * @return The highest value of the bucket the percentile falls in, or 0 when empty.
+         */
+        long percentileNanos(final double percentile) {
+            if (this.count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(this.count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < Histogram.BUCKETS; i++) {
+                seen += this.counts[i];
+                if (seen >= rank) return Histogram.highestValue(i);
+            }
+            return Histogram.MAX_NANOS;
+        }
+
+        long maxNanos() {
+            for (int i = Histogram.BUCKETS - 1; i >= 0; i--) {
+                if (this.counts[i] > 0) return Histogram.highestValue(i);
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return "[Count: "
+                    + this.count
+                    + ", Mean: "
+                    + micros(meanNanos())
+                    + ", p50: "
+                    + micros(percentileNanos(50))
+                    + ", p90: "
+                    + micros(percentileNanos(90))
+                    + ", p99: "
+                    + micros(percentileNanos(99))
+                    + ", p99.9: "
+                    + micros(percentileNanos(99.9))
+                    + ", Max: "
+                    + micros(maxNanos())
+                    + "]";
+        }
+
+        private static String micros(final long nanos) {
+            return String.format("%.1fus", nanos / 1000.0);
+        }
+    }
+
+    private static final Histogram[] latencies = initLatencies();
+    private static final LongAdder[] responses = initResponses();
+    private static final Map<String, Supplier<Object>> gauges = new LinkedHashMap<>();
+
+    private static Snapshot[] last_latencies;
+    private static long[] last_responses;
+
+    /**
+     * @param request
+     * @param response
+     * @param nanos How long the request took, including waiting for the backend lock.
+     */
+    static void record(final Request request, final Response response, final long nanos) {
+        latencies[request.ordinal()].record(nanos);
+        responses[response.ordinal()].increment();
+    }
+
+    /**
+     * Adds a value to every report, replacing a gauge with the same name.
+     *
+     * @param name
+     * @param value Read when a report is built, under whatever lock the reader holds.
+     */
+    static synchronized void gauge(final String name, final Supplier<Object> value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * @param request
+     * @return Everything recorded for {@code request} since startup.
+     */
+    static Snapshot latency(final Request request) {
+        return latencies[request.ordinal()].snapshot();
+    }
+
+    /**
+     * @param response
+     * @return How many times {@code response} was returned since startup.
+     */
+    static long responses(final Response response) {
+        return responses[response.ordinal()].sum();
+    }
+
+    /**
+     * @return Everything recorded since startup, one line per request that was made.
+     */
+    static synchronized String report() {
+        return report(snapshotLatencies(), sumResponses());
+    }
+
+    /** Appends what was recorded since the previous dump to the metrics file of the day. */
+    static synchronized void dump() {
+        Snapshot[] latency = snapshotLatencies();
+        long[] counts = sumResponses();
+
+        Snapshot[] interval = latency.clone();
+        long[] interval_counts = counts.clone();
+        if (last_latencies != null) {
+            for (int i = 0; i < latencies.length; i++) {
+                interval[i] = latency[i].minus(last_latencies[i]);
+            }
+            for (int i = 0; i < responses.length; i++) interval_counts[i] -= last_responses[i];
+        }
+        last_latencies = latency;
+        last_responses = counts;
+
+        File directory = new File(Config.logDirectory());
+        directory.mkdirs();
+        File file = new File(directory, LocalDate.now() + "Metrics.log");
+        try (Writer writer = new FileWriter(file, true)) {
+            writer.write(LocalDateTime.now() + "\n" + report(interval, interval_counts) + "\n");
+        } catch (IOException e) {
+            Log.error(Category.Maintenance, "Cannot write metrics to {}: {}", file, e);
+        }
+    }
+
+    private static String report(final Snapshot[] latency, final long[] counts) {
+        StringBuilder report = new StringBuilder("Latency:\n");
+        for (Request request : Request.values()) {
+            Snapshot snapshot = latency[request.ordinal()];
+            if (snapshot.count() == 0) continue;
+            report.append('\t').append(request).append(": ").append(snapshot).append('\n');
+        }
+        report.append("Responses:\n");
+        for (Response response : Response.values()) {
+            long count = counts[response.ordinal()];
+            if (count == 0) continue;
+            report.append('\t').append(response).append(": ").append(count).append('\n');
+        }
+        report.append("Gauges:\n");
+        for (Map.Entry<String, Supplier<Object>> gauge : gauges.entrySet()) {
+            report.append('\t')
+                    .append(gauge.getKey())
+                    .append(": ")
+                    .append(gauge.getValue().get())
+                    .append('\n');
+        }
+        return report.toString();
+    }
+
+    private static Snapshot[] snapshotLatencies() {
+        Snapshot[] latency = new Snapshot[latencies.length];
+        for (int i = 0; i < latencies.length; i++) latency[i] = latencies[i].snapshot();
+        return latency;
+    }
+
+    private static long[] sumResponses() {
+        long[] counts = new long[responses.length];
+        for (int i = 0; i < responses.length; i++) counts[i] = responses[i].sum();
+        return counts;
+    }
+
+    private static Histogram[] initLatencies() {
+        Histogram[] latencies = new Histogram[Request.values().length];
+        for (int i = 0; i < latencies.length; i++) latencies[i] = new Histogram();
+        return latencies;
+    }
+
+    private static LongAdder[] initResponses() {
+        LongAdder[] responses = new LongAdder[Response.values().length];
+        for (int i = 0; i < responses.length; i++) responses[i] = new LongAdder();
+        return responses;
+    }
+}
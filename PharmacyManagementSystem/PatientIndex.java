@@ -0,0 +1,128 @@
+package PharmacyManagementSystem;
+
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * {@link PatientIndex} finds customers the way the counter identifies them, by name and date of
+ * birth, with one probe. Names are compared in lower case without accents or apostrophes, with
+ * other punctuation and runs of spaces turned into single spaces, so "Jos\u00e9 O'Brien" is found as
+ * "jose obrien". Birthdays are compared by date. Customers who share both keep one entry.
+ *
+ * <p>Not synchronized: updates hold the write side of the backend lock, lookups the read side.
+ */
+class PatientIndex {
+    private record Key(String name, LocalDate birthday) {}
+
+    private static final UUID[] NONE = new UUID[0];
+
+    private final HashMap<Key, UUID[]> ids;
+
+    PatientIndex() {
+        this.ids = new HashMap<>();
+    }
+
+    /**
+     * @param customer
+     */
+    void add(final Customer customer) {
+        add(customer.getID(), customer.getName(), customer.getBirthday());
+    }
+
+    /**
+     * @param id
+     * @param name
+     * @param birthday
+     */
+    void add(final UUID id, final String name, final LocalDateTime birthday) {
+        Key key = key(name, birthday);
+        if (key == null) return;
+        UUID[] ids = this.ids.get(key);
+        if (ids == null) {
+            this.ids.put(key, new UUID[] {id});
+        } else if (!Arrays.asList(ids).contains(id)) {
+            ids = Arrays.copyOf(ids, ids.length + 1);
+            ids[ids.length - 1] = id;
+            this.ids.put(key, ids);
+        }
+    }
+
+    /**
+     * Removes a customer under the name and birthday it was indexed with, so call it before either
+     * changes.
+     *
+     * @param customer
+     */
+    void remove(final Customer customer) {
+        Key key = key(customer.getName(), customer.getBirthday());
+        if (key == null) return;
+        UUID[] ids = this.ids.get(key);
+        if (ids == null) return;
+
+        int index = Arrays.asList(ids).indexOf(customer.getID());
+        if (index < 0) return;
+        if (ids.length == 1) {
+            this.ids.remove(key);
+            return;
+        }
+        UUID[] rest = new UUID[ids.length - 1];
+        System.arraycopy(ids, 0, rest, 0, index);
+        System.arraycopy(ids, index + 1, rest, index, rest.length - index);
+        this.ids.put(key, rest);
+    }
+
+    /**
+     * @param name
+     * @param birthday
+     * @return The IDs of the customers with that name and birthday, oldest entry first.
+     */
+    UUID[] find(final String name, final LocalDateTime birthday) {
+        Key key = key(name, birthday);
+        UUID[] ids = key == null ? null : this.ids.get(key);
+        return ids == null ? NONE : ids.clone();
+    }
+
+    void clear() {
+        this.ids.clear();
+    }
+
+    /**
+     * @return The number of distinct names and birthdays.
+     */
+    int size() {
+        return this.ids.size();
+    }
+
+    /**
+     * @param name
+     * @return {@code name} in lower case letters and digits without accents, words separated by
+     *     single spaces.
+     */
+    static String normalize(final String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        StringBuilder normal = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && normal.length() > 0) normal.append(' ');
+                normal.append(Character.toLowerCase(c));
+                space = false;
+            } else if (c != '\''
+                    && c != '\u2019'
+                    && Character.getType(c) != Character.NON_SPACING_MARK) {
+                space = true;
+            }
+        }
+        return normal.toString();
+    }
+
+    private static Key key(final String name, final LocalDateTime birthday) {
+        if (name == null || birthday == null) return null;
+        return new Key(normalize(name), birthday.toLocalDate());
+    }
+}
@@ -0,0 +1,90 @@
+package PharmacyManagementSystem;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * {@link RingBuffer} is a bounded queue for many producers and one consumer that never locks. Every
+ * slot carries a sequence number: a producer claims the next slot with a compare-and-set on the
+ * tail and publishes by advancing the slot's sequence, and the consumer takes published slots in
+ * order and hands them back by advancing the sequence one lap ahead.
+ *
+ * @param <T>
+ */
+class RingBuffer<T> {
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail;
+    private final int mask;
+    private long head;
+
+    /**
+     * @param capacity Rounded up to a power of two.
+     */
+    RingBuffer(final int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) this.sequences.set(i, i);
+        this.tail = new AtomicLong();
+        this.mask = size - 1;
+    }
+
+    /**
+     * Called by any thread.
+     *
+     * @param item
+     * @return False when the buffer is full.
+     */
+    boolean offer(final T item) {
+        while (true) {
+            long tail = this.tail.get();
+            int slot = (int) (tail & this.mask);
+            long sequence = this.sequences.get(slot);
+            if (sequence == tail) {
+                if (this.tail.compareAndSet(tail, tail + 1)) {
+                    this.slots.lazySet(slot, item);
+                    this.sequences.set(slot, tail + 1);
+                    return true;
+                }
+            } else if (sequence < tail) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Called by the consumer thread only.
+     *
+     * @param sink Receives the items in the order they were offered.
+     * @param max
+     * @return The number of items drained.
+     */
+    int drain(final Consumer<T> sink, final int max) {
+        int drained = 0;
+        while (drained < max) {
+            int slot = (int) (this.head & this.mask);
+            if (this.sequences.get(slot) != this.head + 1) break;
+            T item = this.slots.get(slot);
+            this.slots.lazySet(slot, null);
+            this.sequences.set(slot, this.head + this.slots.length());
+            this.head++;
+            sink.accept(item);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * @return Whether nothing is waiting, exact only on the consumer thread.
+     */
+    boolean isEmpty() {
+        return this.tail.get() == this.head;
+    }
+
+    int capacity() {
+        return this.slots.length();
+    }
+}
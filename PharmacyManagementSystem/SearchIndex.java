@@ -0,0 +1,297 @@
+package PharmacyManagementSystem;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * {@link SearchIndex} finds stock items by part of their name or drug name. The text of an item is
+ * its name and drug name in lower case, with anything but letters and digits turned into single
+ * spaces. Every trigram of the text, and the first one and two characters of every word, keep a
+ * sorted list of the SKUs that contain them.
+ *
+ * <p>A search intersects the lists of the grams of the query, shortest first, so its cost follows
+ * the rarest gram and not the size of the catalog. The candidates left are checked against their
+ * text and ranked: text that starts with the query first, then a word that starts with it, then
+ * anywhere else, shorter texts and older SKUs first within each. Queries of one or two characters
+ * only match the start of a word.
+ *
+ * <p>Not synchronized: updates hold the write side of the backend lock, searches the read side.
+ */
+class SearchIndex {
+    private static final long WORD_START = 1L << 48;
+    private static final int RANK_SHIFT = 52;
+    private static final int LENGTH_SHIFT = 31;
+    private static final int MAX_LENGTH = (1 << (RANK_SHIFT - LENGTH_SHIFT)) - 1;
+
+    /** A growable sorted array of SKUs. */
+    private static final class Postings {
+        private int[] skus = new int[4];
+        private int size;
+
+        void add(final int sku) {
+            if (this.size > 0 && this.skus[this.size - 1] >= sku) {
+                int index = Arrays.binarySearch(this.skus, 0, this.size, sku);
+                if (index >= 0) return;
+                insert(-index - 1, sku);
+            } else {
+                insert(this.size, sku);
+            }
+        }
+
+        void remove(final int sku) {
+            int index = Arrays.binarySearch(this.skus, 0, this.size, sku);
+            if (index < 0) return;
+            System.arraycopy(this.skus, index + 1, this.skus, index, this.size - index - 1);
+            this.size--;
+        }
+
+        private void insert(final int index, final int sku) {
+            if (this.size == this.skus.length) {
+                this.skus = Arrays.copyOf(this.skus, this.skus.length * 2);
+            }
+            System.arraycopy(this.skus, index, this.skus, index + 1, this.size - index);
+            this.skus[index] = sku;
+            this.size++;
+        }
+    }
+
+    private final HashMap<Long, Postings> grams;
+    private String[] texts;
+    private int size;
+
+    SearchIndex() {
+        this.grams = new HashMap<>();
+        this.texts = new String[1024];
+    }
+
+    /**
+     * Indexes an item, or moves it to its new text after a rename.
+     *
+     * @param sku
+     * @param name
+     * @param drug_name Null for a plain stock item.
+     */
+    void add(final int sku, final String name, final String drug_name) {
+        String text = normalize(drug_name == null ? name : name + " " + drug_name);
+        if (sku >= this.texts.length) {
+            this.texts = Arrays.copyOf(this.texts, Math.max(sku + 1, 2 * this.texts.length));
+        }
+        String previous = this.texts[sku];
+        if (text.equals(previous)) return;
+        if (previous != null) remove(sku);
+
+        for (long gram : grams(text))
+            this.grams.computeIfAbsent(gram, g -> new Postings()).add(sku);
+        this.texts[sku] = text;
+        this.size++;
+    }
+
+    /**
+     * @param sku
+     */
+    void remove(final int sku) {
+        if (sku >= this.texts.length || this.texts[sku] == null) return;
+        for (long gram : grams(this.texts[sku])) {
+            Postings postings = this.grams.get(gram);
+            if (postings == null) continue;
+            postings.remove(sku);
+            if (postings.size == 0) this.grams.remove(gram);
+        }
+        this.texts[sku] = null;
+        this.size--;
+    }
+
+    void clear() {
+        this.grams.clear();
+        this.texts = new String[1024];
+        this.size = 0;
+    }
+
+    /**
+     * @return The number of items indexed.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @param query Part of a name or drug name, in any case.
+     * @param limit
+     * @return The SKUs of the best {@code limit} matches, best first.
+     */
+    int[] search(final String query, final int limit) {
+        String text = normalize(query);
+        if (text.isEmpty() || limit <= 0) return new int[0];
+
+        // Trigrams sort before word start grams, which only apply to a query as a whole.
+        long[] grams = grams(text);
+        if (text.length() < 3) {
+            grams = new long[] {grams[grams.length - 1]};
+        } else {
+            int trigrams = 0;
+            while (grams[trigrams] < WORD_START) trigrams++;
+            grams = Arrays.copyOf(grams, trigrams);
+        }
+        Postings[] lists = new Postings[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = this.grams.get(grams[i]);
+            if (lists[i] == null) return new int[0];
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+        int[] candidates = Arrays.copyOf(lists[0].skus, lists[0].size);
+        int count = candidates.length;
+        for (int i = 1; i < lists.length && count > 0; i++) {
+            count = retain(candidates, count, lists[i]);
+        }
+
+        // Bounded max heap of the best scores, the worst kept score on top.
+        long[] heap = new long[Math.min(limit, count)];
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            String candidate = this.texts[candidates[i]];
+            // Skip the text scan when even the best rank could not displace the worst kept score.
+            if (kept == heap.length && score(0, candidate, candidates[i]) >= heap[0]) continue;
+            long score = score(candidate, text, candidates[i]);
+            if (score < 0) continue;
+            if (kept < heap.length) {
+                heap[kept] = score;
+                siftUp(heap, kept++);
+            } else if (score < heap[0]) {
+                heap[0] = score;
+                siftDown(heap, kept);
+            }
+        }
+
+        long[] best = Arrays.copyOf(heap, kept);
+        Arrays.sort(best);
+        int[] skus = new int[kept];
+        for (int i = 0; i < kept; i++) skus[i] = (int) (best[i] & Integer.MAX_VALUE);
+        return skus;
+    }
+
+    /**
+     * @param text
+     * @return {@code text} in lower case letters and digits, words separated by single spaces.
+     */
+    static String normalize(final String text) {
+        if (text == null) return "";
+        StringBuilder normal = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && normal.length() > 0) normal.append(' ');
+                normal.append(Character.toLowerCase(c));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return normal.toString();
+    }
+
+    /**
+     * @return The distinct grams of a normalized text, sorted. For a text shorter than three
+     *     characters the last one is the word start gram of the whole text.
+     */
+    private static long[] grams(final String text) {
+        long[] grams = new long[3 * text.length()];
+        int count = 0;
+        for (int i = 0; i + 2 < text.length(); i++) {
+            grams[count++] =
+                    ((long) text.charAt(i) << 32)
+                            | ((long) text.charAt(i + 1) << 16)
+                            | text.charAt(i + 2);
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (i > 0 && text.charAt(i - 1) != ' ') continue;
+            grams[count++] = WORD_START | text.charAt(i);
+            if (i + 1 < text.length() && text.charAt(i + 1) != ' ') {
+                grams[count++] = WORD_START | ((long) text.charAt(i) << 16) | text.charAt(i + 1);
+            }
+        }
+
+        Arrays.sort(grams, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || grams[distinct - 1] != grams[i]) grams[distinct++] = grams[i];
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    /**
+     * Keeps the first {@code count} candidates that are also in {@code postings}, galloping through
+     * the postings since both are sorted.
+     *
+     * @return The number of candidates kept.
+     */
+    private static int retain(final int[] candidates, final int count, final Postings postings) {
+        int kept = 0;
+        int from = 0;
+        for (int i = 0; i < count && from < postings.size; i++) {
+            int sku = candidates[i];
+            int bound = 1;
+            while (from + bound < postings.size && postings.skus[from + bound] < sku) bound <<= 1;
+            int to = Math.min(from + bound + 1, postings.size);
+            int index = Arrays.binarySearch(postings.skus, from, to, sku);
+            if (index >= 0) {
+                candidates[kept++] = sku;
+                from = index + 1;
+            } else {
+                from = -index - 1;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return The rank, text length and SKU packed so that lower is better, or -1 if the text does
+     *     not contain the query.
+     */
+    private static long score(final String text, final String query, final int sku) {
+        int rank = -1;
+        for (int i = text.indexOf(query); i >= 0 && rank != 1; i = text.indexOf(query, i + 1)) {
+            if (i == 0) {
+                rank = 0;
+                break;
+            }
+            rank = text.charAt(i - 1) == ' ' ? 1 : 2;
+        }
+        return rank < 0 ? -1 : score(rank, text, sku);
+    }
+
+    private static long score(final int rank, final String text, final int sku) {
+        long length = Math.min(text.length(), MAX_LENGTH);
+        return ((long) rank << RANK_SHIFT) | (length << LENGTH_SHIFT) | sku;
+    }
+
+    private static void siftUp(final long[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent] >= heap[index]) return;
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(final long[] heap, final int size) {
+        int index = 0;
+        while (true) {
+            int largest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && heap[left] > heap[largest]) largest = left;
+            if (right < size && heap[right] > heap[largest]) largest = right;
+            if (largest == index) return;
+            swap(heap, largest, index);
+            index = largest;
+        }
+    }
+
+    private static void swap(final long[] heap, final int a, final int b) {
+        long swap = heap[a];
+        heap[a] = heap[b];
+        heap[b] = swap;
+    }
+}
@@ -0,0 +1,409 @@
+package PharmacyManagementSystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The {@link Server} exposes the {@link API} over TCP. A single selector thread accepts, reads and
+ * writes every connection without blocking, and a worker pool executes the requests. Each
+ * connection gets its own {@link Session}.
+ *
+ * <p>Every message is framed as {@code [int length][payload]}. A client payload is {@code [byte
+ * kind][int ordinal][serialized data]}, where kind 0 carries a {@link Request} and kind 1 carries
+ * the {@link Response} that answers a login or password prompt. A kind 1 frame is answered with
+ * {@link Response#BadRequest} unless it answers the prompt the previous request returned. Kind 2
+ * carries a list of {@link Call}s for {@link API#receiveBatch(Session, List)}, its ordinal is
+ * ignored. The server answers each client frame with {@code [int response ordinal][serialized
+ * data]}, where the data is what a Get request read, the list of {@link Reply}s of a batch, or
+ * null.
+ *
+ * <p>Clients may pipeline: frames of one connection are executed in order, one at a time, and
+ * answered in the same order. A connection is not read while it has {@link
+ * Config#serverMaxQueuedFrames()} frames and replies, or a frame's worth of bytes, queued, so a
+ * client that sends faster than it is served waits on TCP instead of growing the heap.
+ */
+public class Server {
+    static final byte REQUEST = 0;
+    static final byte RESPONSE = 1;
+    static final byte BATCH = 2;
+
+    private static final ObjectInputFilter FILTER =
+            ObjectInputFilter.Config.createFilter(
+                    "maxdepth=32;maxarray=65536;maxrefs=1048576;maxbytes="
+                            + Config.serverMaxFrameBytes()
+                            + ";PharmacyManagementSystem.*;java.base/*;!*");
+    // Replies come from the server, which does not cap their size.
+    private static final ObjectInputFilter REPLY_FILTER =
+            ObjectInputFilter.Config.createFilter(
+                    "maxdepth=32;PharmacyManagementSystem.*;java.base/*;!*");
+
+    private final API api;
+    private final Selector selector;
+    private final ServerSocketChannel listener;
+    private final ExecutorService workers;
+    private final ConcurrentLinkedQueue<Connection> writable;
+    private final Thread thread;
+    private final int max_frame_bytes;
+    private final int max_queued_frames;
+    private volatile boolean closed;
+
+    /** The state of one client. Frames and replies are guarded by the connection itself. */
+    private class Connection {
+        private final SocketChannel channel;
+        private final Session session;
+        private final ArrayDeque<byte[]> frames;
+        private final ArrayDeque<ByteBuffer> replies;
+        private ByteBuffer input;
+        private SelectionKey key;
+        private boolean running;
+        private long queued_bytes;
+
+        Connection(final SocketChannel channel) {
+            this.channel = channel;
+            this.session = api.connect();
+            this.frames = new ArrayDeque<>();
+            this.replies = new ArrayDeque<>();
+            this.input = ByteBuffer.allocate(4096);
+        }
+    }
+
+    /**
+     * Binds the address and starts the selector thread.
+     *
+     * @param api
+     * @param address The host name or IP address to listen on.
+     * @param port
+     */
+    public Server(final API api, final String address, final int port) throws IOException {
+        this.api = api;
+        this.max_frame_bytes = Config.serverMaxFrameBytes();
+        this.max_queued_frames = Config.serverMaxQueuedFrames();
+        this.selector = Selector.open();
+        this.listener = ServerSocketChannel.open();
+        this.listener.bind(new InetSocketAddress(address, port), 1024);
+        this.listener.configureBlocking(false);
+        this.listener.register(this.selector, SelectionKey.OP_ACCEPT);
+        this.workers = Executors.newFixedThreadPool(Config.serverThreads());
+        this.writable = new ConcurrentLinkedQueue<>();
+        this.thread = new Thread(this::selectLoop, "api-server");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        Log.info(Category.Server, "Server listening on {}:{}.", address, getPort());
+    }
+
+    /**
+     * @return The bound port, useful when the server was started on port 0.
+     */
+    public int getPort() {
+        return this.listener.socket().getLocalPort();
+    }
+
+    /** Stops accepting, closes every connection and waits for running requests. */
+    public void close() {
+        this.closed = true;
+        this.selector.wakeup();
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.workers.shutdown();
+    }
+
+    private void selectLoop() {
+        while (!this.closed) {
+            try {
+                this.selector.select();
+                Connection connection;
+                while ((connection = this.writable.poll()) != null) updateInterest(connection);
+
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else {
+                        if (key.isReadable()) read((Connection) key.attachment());
+                        if (key.isValid() && key.isWritable()) {
+                            write((Connection) key.attachment());
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                Log.error("Exception in server: " + e);
+            }
+        }
+
+        for (SelectionKey key : this.selector.keys()) {
+            if (key.attachment() instanceof Connection) disconnect((Connection) key.attachment());
+        }
+        try {
+            this.listener.close();
+            this.selector.close();
+        } catch (IOException e) {
+            Log.error("Exception in server close: " + e);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = this.listener.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+    }
+
+    private void read(final Connection connection) {
+        try {
+            if (connection.channel.read(connection.input) < 0) {
+                disconnect(connection);
+                return;
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+            return;
+        }
+
+        ByteBuffer input = connection.input;
+        input.flip();
+        boolean queued = false;
+        while (input.remaining() >= Integer.BYTES) {
+            int length = input.getInt(input.position());
+            if (length < 0 || length > this.max_frame_bytes) {
+                Log.error("Dropping connection with a " + length + " byte frame.");
+                disconnect(connection);
+                return;
+            }
+            if (input.remaining() < Integer.BYTES + length) break;
+
+            input.position(input.position() + Integer.BYTES);
+            byte[] frame = new byte[length];
+            input.get(frame);
+            synchronized (connection) {
+                connection.frames.add(frame);
+                connection.queued_bytes += length;
+            }
+            queued = true;
+        }
+        input.compact();
+
+        // Grow the buffer when a frame does not fit.
+        if (input.position() >= Integer.BYTES && !input.hasRemaining()) {
+            int length = input.getInt(0);
+            ByteBuffer larger = ByteBuffer.allocate(Integer.BYTES + length);
+            input.flip();
+            larger.put(input);
+            connection.input = larger;
+        }
+
+        if (queued) {
+            updateInterest(connection);
+            drain(connection);
+        }
+    }
+
+    /** Executes the queued frames of a connection one after another on the worker pool. */
+    private void drain(final Connection connection) {
+        synchronized (connection) {
+            if (connection.running || connection.frames.isEmpty()) return;
+            connection.running = true;
+        }
+        this.workers.execute(
+                () -> {
+                    while (true) {
+                        byte[] frame;
+                        synchronized (connection) {
+                            frame = connection.frames.poll();
+                            if (frame == null) {
+                                connection.running = false;
+                                return;
+                            }
+                        }
+                        ByteBuffer reply = handle(connection.session, frame);
+                        synchronized (connection) {
+                            connection.queued_bytes += reply.limit() - frame.length;
+                            connection.replies.add(reply);
+                        }
+                        this.writable.add(connection);
+                        this.selector.wakeup();
+                    }
+                });
+    }
+
+    private void write(final Connection connection) {
+        try {
+            synchronized (connection) {
+                while (!connection.replies.isEmpty()) {
+                    ByteBuffer reply = connection.replies.peek();
+                    connection.channel.write(reply);
+                    if (reply.hasRemaining()) break;
+                    connection.replies.poll();
+                    connection.queued_bytes -= reply.limit();
+                }
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+            return;
+        }
+        updateInterest(connection);
+    }
+
+    /**
+     * Reads a connection unless it has too much queued, and writes it while it has replies. Runs on
+     * the selector thread.
+     */
+    private void updateInterest(final Connection connection) {
+        if (!connection.key.isValid()) return;
+        synchronized (connection) {
+            boolean full =
+                    connection.frames.size() + connection.replies.size() >= this.max_queued_frames
+                            || connection.queued_bytes >= this.max_frame_bytes;
+            int ops = full ? 0 : SelectionKey.OP_READ;
+            if (!connection.replies.isEmpty()) ops |= SelectionKey.OP_WRITE;
+            connection.key.interestOps(ops);
+        }
+    }
+
+    private void disconnect(final Connection connection) {
+        if (connection.key != null) connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            Log.error("Exception closing connection: " + e);
+        }
+        if (connection.session.isOpen()) this.api.disconnect(connection.session);
+    }
+
+    /**
+     * @param session
+     * @param frame A client payload.
+     * @return The framed reply.
+     */
+    private ByteBuffer handle(final Session session, final byte[] frame) {
+        Response response;
+        Object data = null;
+        try {
+            ByteBuffer in = ByteBuffer.wrap(frame);
+            byte kind = in.get();
+            int ordinal = in.getInt();
+            Object argument = decode(frame, in.position(), FILTER);
+
+            if (kind == REQUEST) {
+                Request request = Request.values()[ordinal];
+                if (API.isQuery(request)) {
+                    Reply reply = this.api.query(session, request, argument);
+                    response = reply.response();
+                    data = reply.data();
+                } else {
+                    response = this.api.receive(session, request, argument);
+                }
+            } else if (kind == RESPONSE) {
+                response = this.api.send(session, Response.values()[ordinal], argument);
+            } else if (kind == BATCH) {
+                @SuppressWarnings("unchecked")
+                List<Call> calls = (List<Call>) argument;
+                data = new ArrayList<>(this.api.receiveBatch(session, calls));
+                response = Response.Ok;
+            } else {
+                response = Response.BadRequest;
+            }
+        } catch (Exception e) {
+            Log.error("Bad frame from client: " + e);
+            response = Response.BadRequest;
+            data = null;
+        }
+
+        return encode(response, data);
+    }
+
+    /**
+     * Builds a client frame, for Java clients of the server.
+     *
+     * @param kind {@link #REQUEST} or {@link #RESPONSE}.
+     * @param ordinal A {@link Request} or {@link Response} ordinal.
+     * @param data
+     * @return A framed client message.
+     */
+    static byte[] frame(final byte kind, final int ordinal, final Object data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeByte(kind);
+        out.writeInt(ordinal);
+        writeObject(out, data);
+        out.flush();
+        byte[] frame = bytes.toByteArray();
+        ByteBuffer.wrap(frame).putInt(frame.length - Integer.BYTES);
+        return frame;
+    }
+
+    /**
+     * Decodes a server reply, for Java clients of the server.
+     *
+     * @param payload A reply without its length prefix.
+     */
+    static Reply reply(final byte[] payload) throws Exception {
+        Response response = Response.values()[ByteBuffer.wrap(payload).getInt()];
+        return new Reply(response, decode(payload, Integer.BYTES, REPLY_FILTER));
+    }
+
+    private static ByteBuffer encode(final Response response, final Object data) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.writeInt(response.ordinal());
+            writeObject(out, data);
+            out.flush();
+            ByteBuffer reply = ByteBuffer.wrap(bytes.toByteArray());
+            reply.putInt(0, reply.limit() - Integer.BYTES);
+            return reply;
+        } catch (IOException e) {
+            Log.error("Cannot encode reply: " + e);
+            return encode(Response.BadRequest, null);
+        }
+    }
+
+    private static void writeObject(final DataOutputStream out, final Object data)
+            throws IOException {
+        ObjectOutputStream object = new ObjectOutputStream(out);
+        object.writeObject(data);
+        object.flush();
+    }
+
+    /**
+     * @param frame
+     * @param offset
+     * @param filter
+     * @return The serialized object at {@code offset}, restricted to this package and the JDK.
+     */
+    private static Object decode(
+            final byte[] frame, final int offset, final ObjectInputFilter filter) throws Exception {
+        ObjectInputStream in =
+                new ObjectInputStream(
+                        new ByteArrayInputStream(frame, offset, frame.length - offset));
+        in.setObjectInputFilter(filter);
+        return in.readObject();
+    }
+}
@@ -0,0 +1,94 @@
+package PharmacyManagementSystem;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A {@link Session} is one terminal connected to the {@link Backend}. Every session logs in on its
+ * own, so several registers and stations can share one backend. A session left idle past {@link
+ * Config#sessionIdleTimeout()} is logged out and closed by the sessions job of {@link Maintenance}.
+ */
+public class Session {
+    private final UUID token;
+    private Account logging_in;
+    private Account logged_in;
+    private Response prompt;
+    private volatile LocalDateTime last_access;
+    private volatile boolean open;
+
+    Session() {
+        this.token = UUID.randomUUID();
+        this.last_access = LocalDateTime.now();
+        this.open = true;
+    }
+
+    // Getters/Setters
+    public UUID getToken() {
+        return this.token;
+    }
+
+    public Account getLoggingIn() {
+        return this.logging_in;
+    }
+
+    void setLoggingIn(final Account logging_in) {
+        this.logging_in = logging_in;
+    }
+
+    public Account getLoggedIn() {
+        return this.logged_in;
+    }
+
+    void setLoggedIn(final Account logged_in) {
+        this.logged_in = logged_in;
+    }
+
+    /**
+     * @return The prompt the last request of this session returned, which is the only {@link
+     *     Response} it may answer with {@link API#send(Session, Response, Object)}, or null.
+     */
+    Response getPrompt() {
+        return this.prompt;
+    }
+
+    void setPrompt(final Response prompt) {
+        this.prompt = prompt;
+    }
+
+    public LocalDateTime getLastAccess() {
+        return this.last_access;
+    }
+
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    void touch() {
+        this.last_access = LocalDateTime.now();
+    }
+
+    /**
+     * @return Whether the session was idle for longer than the configured timeout.
+     */
+    boolean isIdle() {
+        return this.last_access.isBefore(Config.sessionIdleTimeout());
+    }
+
+    void close() {
+        this.open = false;
+        this.logging_in = null;
+        this.logged_in = null;
+        this.prompt = null;
+    }
+
+    @Override
+    public String toString() {
+        return "[Token: "
+                + this.token
+                + ", Account: "
+                + (this.logged_in == null ? null : this.logged_in.getName())
+                + ", Last access: "
+                + this.last_access
+                + "]";
+    }
+}
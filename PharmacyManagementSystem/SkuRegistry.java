@@ -0,0 +1,127 @@
+package PharmacyManagementSystem;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link SkuRegistry} keeps the keys of the catalog. Every stock ID gets a dense int key, its SKU,
+ * the first time it is registered, and SKUs are never reused, so they can index arrays. It also
+ * remembers which ID each identity in stock has, where the identity is the name of a stock item, or
+ * the name, drug name and expiration date of a drug. An identity is only claimed when its item is
+ * registered into stock, so copies such as order and prescription items claim nothing.
+ *
+ * <p>The first ID of an identity is the name-based UUID of the identity, as it always was, so IDs
+ * of saved data and imports still match. After that the ID belongs to the item: renaming it moves
+ * the identity instead of rehashing the item and reinserting it under a new ID. When a new item
+ * takes an identity whose name-based UUID already belongs to a renamed item, it gets a random ID.
+ *
+ * <p>Lookups do not lock or allocate. Assigning a SKU or an identity is synchronized.
+ */
+class SkuRegistry {
+    /** Never assigned, so a zero int field means no SKU. */
+    static final int NONE = 0;
+
+    private final UUIDMap<Integer> skus;
+    private final ConcurrentHashMap<String, UUID> identities;
+    private final UUIDMap<String> owners;
+    private volatile UUID[] ids;
+    private int size;
+
+    SkuRegistry() {
+        this.skus = new UUIDMap<>();
+        this.identities = new ConcurrentHashMap<>();
+        this.owners = new UUIDMap<>();
+        this.ids = new UUID[1024];
+        this.size = 1;
+    }
+
+    /**
+     * @param id
+     * @return The SKU of {@code id}, or {@link #NONE} if it was never registered.
+     */
+    int sku(final UUID id) {
+        Integer sku = this.skus.get(id);
+        return sku == null ? NONE : sku;
+    }
+
+    /**
+     * @param sku
+     * @return The ID with that SKU, or null.
+     */
+    UUID id(final int sku) {
+        UUID[] ids = this.ids;
+        return sku > NONE && sku < ids.length ? ids[sku] : null;
+    }
+
+    /**
+     * @param id
+     * @return The SKU of {@code id}, assigned now if it has none.
+     */
+    int register(final UUID id) {
+        Integer sku = this.skus.get(id);
+        if (sku != null) return sku;
+        synchronized (this) {
+            sku = this.skus.get(id);
+            if (sku != null) return sku;
+            if (this.size == this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, this.ids.length * 2);
+            }
+            this.ids[this.size] = id;
+            this.skus.put(id, this.size);
+            return this.size++;
+        }
+    }
+
+    /**
+     * Registers an item that already has an ID, such as a restored or imported one, under its
+     * identity. An identity that already has an ID keeps it.
+     *
+     * @param id
+     * @param identity
+     * @return The SKU of {@code id}.
+     */
+    synchronized int register(final UUID id, final String identity) {
+        this.identities.putIfAbsent(identity, id);
+        this.owners.putIfAbsent(id, identity);
+        return register(id);
+    }
+
+    /**
+     * @param identity
+     * @return The ID of the item in stock with {@code identity}, or the ID a new item with it gets.
+     */
+    UUID identify(final String identity) {
+        UUID id = this.identities.get(identity);
+        if (id != null) return id;
+
+        // Hash outside the lock, so parallel imports only serialize on the lookup.
+        UUID named = UUID.nameUUIDFromBytes(identity.getBytes());
+        synchronized (this) {
+            id = this.identities.get(identity);
+            if (id != null) return id;
+            return this.owners.containsKey(named) ? UUID.randomUUID() : named;
+        }
+    }
+
+    /**
+     * Moves {@code id} from one identity to another. The old identity is free for a new item, and
+     * the new one keeps the ID it already had, if any.
+     *
+     * @param id
+     * @param from
+     * @param to
+     */
+    synchronized void rename(final UUID id, final String from, final String to) {
+        this.identities.remove(from, id);
+        this.identities.putIfAbsent(to, id);
+        this.owners.put(id, to);
+    }
+
+    /**
+     * @return The number of SKUs assigned so far.
+     */
+    synchronized int size() {
+        return this.size - 1;
+    }
+}
@@ -0,0 +1,148 @@
+package PharmacyManagementSystem;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * {@link StockJournal} records, per stock item, the quantity changes that deliveries and purchases
+ * were expected to make next to the changes that were actually observed, and whether the item was
+ * in stock before its first change. Reconciling the journal only visits the items that changed
+ * since the last reconciliation.
+ *
+ * <p>Checkouts record concurrently, each change is updated atomically. Reconciling must not
+ * overlap with recording.
+ */
+class StockJournal {
+    /** Everything that happened to one stock item since the last reconciliation. */
+    static class Change {
+        private final boolean was_present;
+        private Stock item;
+        private int received;
+        private int sold;
+        private int observed;
+
+        private Change(final boolean was_present) {
+            this.was_present = was_present;
+        }
+
+        /**
+         * @return Whether the item was in stock before its first change.
+         */
+        boolean wasPresent() {
+            return this.was_present;
+        }
+
+        /**
+         * @return The most recent instance of the item, which may no longer be in stock.
+         */
+        Stock getItem() {
+            return this.item;
+        }
+
+        /**
+         * @return The quantity delivered.
+         */
+        int getReceived() {
+            return this.received;
+        }
+
+        /**
+         * @return The quantity purchased.
+         */
+        int getSold() {
+            return this.sold;
+        }
+
+        /**
+         * @return The net quantity change seen in stock.
+         */
+        int getObserved() {
+            return this.observed;
+        }
+
+        /**
+         * @return The net quantity change that deliveries and purchases account for.
+         */
+        int getExpected() {
+            return this.received - this.sold;
+        }
+    }
+
+    private final ConcurrentHashMap<UUID, Change> changes;
+
+    StockJournal() {
+        this.changes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Records a delivered quantity.
+     *
+     * @param item
+     * @param quantity
+     * @param present Whether the item is in stock before the delivery.
+     */
+    void received(final Stock item, final int quantity, final boolean present) {
+        record(item, present, change -> change.received += quantity);
+    }
+
+    /**
+     * Records a purchased quantity.
+     *
+     * @param item
+     * @param quantity
+     */
+    void sold(final Stock item, final int quantity) {
+        record(item, true, change -> change.sold += quantity);
+    }
+
+    /**
+     * Records a quantity change seen in stock.
+     *
+     * @param item
+     * @param delta
+     * @param present Whether the item was in stock before the change.
+     */
+    void observed(final Stock item, final int delta, final boolean present) {
+        record(item, present, change -> change.observed += delta);
+    }
+
+    /**
+     * Hands every recorded change to the visitor and empties the journal.
+     *
+     * @param visitor
+     */
+    void reconcile(final BiConsumer<UUID, Change> visitor) {
+        this.changes.forEach(visitor);
+        this.changes.clear();
+    }
+
+    /**
+     * Drops the changes recorded for an item, making its current state the baseline.
+     *
+     * @param id
+     */
+    void forget(final UUID id) {
+        this.changes.remove(id);
+    }
+
+    void clear() {
+        this.changes.clear();
+    }
+
+    int size() {
+        return this.changes.size();
+    }
+
+    private void record(final Stock item, final boolean present, final Consumer<Change> update) {
+        this.changes.compute(
+                item.getID(),
+                (id, change) -> {
+                    if (change == null) change = new Change(present);
+                    change.item = item;
+                    update.accept(change);
+                    return change;
+                });
+    }
+}
@@ -0,0 +1,65 @@
+package PharmacyManagementSystem;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link StripedLocks} guards stock items with a fixed pool of locks, picked by the hash of the
+ * stock ID. A checkout locks the stripes of every item in its cart in ascending stripe order, so
+ * two carts can never wait on each other in a cycle, and carts without a shared stripe never wait
+ * at all.
+ */
+class StripedLocks {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    /**
+     * @param stripes Number of locks, rounded up to a power of two.
+     */
+    StripedLocks(final int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) this.stripes[i] = new ReentrantLock();
+        this.mask = size - 1;
+    }
+
+    /**
+     * @param ids
+     * @return The stripes that were locked, to be passed to {@link #unlock(int[])}.
+     */
+    int[] lock(final Collection<UUID> ids) {
+        int[] held = new int[ids.size()];
+        int count = 0;
+        for (UUID id : ids) held[count++] = stripe(id);
+        Arrays.sort(held);
+
+        int unique = 0;
+        for (int i = 0; i < held.length; i++) {
+            if (i == 0 || held[i] != held[i - 1]) held[unique++] = held[i];
+        }
+        held = Arrays.copyOf(held, unique);
+        for (int stripe : held) this.stripes[stripe].lock();
+        return held;
+    }
+
+    /**
+     * @param held
+     */
+    void unlock(final int[] held) {
+        for (int i = held.length - 1; i >= 0; i--) this.stripes[held[i]].unlock();
+    }
+
+    /**
+     * @return The number of stripes.
+     */
+    int size() {
+        return this.stripes.length;
+    }
+
+    private int stripe(final UUID id) {
+        int hash = id.hashCode();
+        return (hash ^ (hash >>> 16)) & this.mask;
+    }
+}
@@ -445,6 +445,41 @@ public class TUI {
 
         return data;
     }
-}
 
+    public static List<Object> getAudit(Scanner scanner) {
+        List<Object> data = new ArrayList<>();
+
+        tui("Enter the number of days to search:");
+        int days = scanner.nextInt();
+        scanner.nextLine();
+        data.add(LocalDateTime.now().minusDays(days));
+        data.add(null);
+
+        tui("Enter account ID (empty for any):");
+        String account = scanner.nextLine();
+        data.add(account.isBlank() ? null : UUID.fromString(account));
 
+        tui("Enter stock, order, customer or account ID (empty for any):");
+        String entity = scanner.nextLine();
+        data.add(entity.isBlank() ? null : UUID.fromString(entity));
+
+        return data;
+    }
+
+    public static String searchStock(Scanner scanner) {
+        tui("Enter part of a stock or drug name:");
+        return scanner.nextLine();
+    }
+
+    public static List<Object> findCustomer(Scanner scanner) {
+        List<Object> data = new ArrayList<>();
+
+        tui("Enter customer date of birth:");
+        data.add(date(scanner));
+
+        tui("Enter customer name:");
+        data.add(scanner.nextLine());
+
+        return data;
+    }
+}
@@ -0,0 +1,379 @@
+package PharmacyManagementSystem;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Binary encoding of a single table record for {@link MappedTable}. Records are decoded straight
+ * from the mapped file with the package-private restore constructors, so loading an entity never
+ * audits, rekeys or touches the {@link Backend}.
+ */
+interface TableCodec<V> {
+    TableCodec<Stock> STOCK = new StockCodec();
+    TableCodec<Customer> CUSTOMER = new CustomerCodec();
+    TableCodec<Account> ACCOUNT = new AccountCodec();
+
+    /**
+     * @param out
+     * @param value
+     */
+    void write(DataOutputStream out, V value) throws IOException;
+
+    /**
+     * @param in Buffer positioned at the start of the record.
+     * @return The decoded record.
+     */
+    V read(ByteBuffer in);
+
+    static void writeUUID(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    static UUID readUUID(ByteBuffer in) {
+        return new UUID(in.getLong(), in.getLong());
+    }
+
+    static void writeString(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeDate(DataOutputStream out, LocalDateTime date) throws IOException {
+        if (date == null) {
+            out.writeLong(Long.MIN_VALUE);
+            out.writeInt(0);
+            return;
+        }
+        out.writeLong(date.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(date.getNano());
+    }
+
+    static LocalDateTime readDate(ByteBuffer in) {
+        long seconds = in.getLong();
+        int nanos = in.getInt();
+        if (seconds == Long.MIN_VALUE) return null;
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+}
+
+class StockCodec implements TableCodec<Stock> {
+    private static final byte STOCK = 0;
+    private static final byte DRUG = 1;
+    private static final byte NO_DISCOUNT = 0;
+    private static final byte FLAT_DISCOUNT = 1;
+    private static final byte PERCENT_DISCOUNT = 2;
+
+    @Override
+    public void write(DataOutputStream out, Stock stock) throws IOException {
+        out.writeByte(stock instanceof Drug ? DRUG : STOCK);
+        TableCodec.writeUUID(out, stock.getID());
+        out.writeInt(stock.getQuantity());
+        out.writeDouble(stock.basePrice());
+        TableCodec.writeString(out, stock.getName());
+
+        Discount discount = stock.getDiscount();
+        if (discount == null) {
+            out.writeByte(NO_DISCOUNT);
+        } else {
+            out.writeByte(discount instanceof PercentDiscount ? PERCENT_DISCOUNT : FLAT_DISCOUNT);
+            out.writeDouble(discount.discount);
+            TableCodec.writeDate(out, discount.expiration);
+        }
+
+        if (stock instanceof Drug) {
+            Drug drug = (Drug) stock;
+            out.writeBoolean(drug.getIsControlled());
+            TableCodec.writeString(out, drug.getDrugName());
+            TableCodec.writeDate(out, drug.getExpirationDate());
+        }
+    }
+
+    @Override
+    public Stock read(ByteBuffer in) {
+        byte type = in.get();
+        UUID id = TableCodec.readUUID(in);
+        int quantity = in.getInt();
+        double price = in.getDouble();
+        String name = TableCodec.readString(in);
+
+        Discount discount = null;
+        byte discount_type = in.get();
+        if (discount_type != NO_DISCOUNT) {
+            double value = in.getDouble();
+            LocalDateTime expiration = TableCodec.readDate(in);
+            discount =
+                    discount_type == PERCENT_DISCOUNT
+                            ? new PercentDiscount(value, expiration, false)
+                            : new Discount(value, expiration, false);
+        }
+
+        if (type == STOCK) return new Stock(id, quantity, price, name, discount);
+
+        boolean is_controlled = in.get() != 0;
+        String drug_name = TableCodec.readString(in);
+        LocalDateTime expiration_date = TableCodec.readDate(in);
+        return new Drug(
+                id, quantity, price, name, discount, is_controlled, drug_name, expiration_date);
+    }
+
+    /**
+     * @param in Buffer positioned at the start of a stock record.
+     * @return The quantity, without decoding the rest of the record.
+     */
+    static int quantity(ByteBuffer in) {
+        return in.getInt(in.position() + 1 + 2 * Long.BYTES);
+    }
+
+    /**
+     * @param in Buffer positioned at the start of a stock record.
+     * @return The name, without decoding the rest of the record.
+     */
+    static String name(ByteBuffer in) {
+        ByteBuffer name = in.duplicate();
+        name.position(in.position() + 1 + 2 * Long.BYTES + Integer.BYTES + Double.BYTES);
+        return TableCodec.readString(name);
+    }
+
+    /**
+     * Skips to the drug name of a drug record without building the {@link Drug}.
+     *
+     * @param in Buffer positioned at the start of a stock record, moved into it on return.
+     * @return The drug name, or null for a plain stock item.
+     */
+    static String drugName(ByteBuffer in) {
+        if (!skipToDrug(in)) return null;
+        in.get();
+        return TableCodec.readString(in);
+    }
+
+    /**
+     * Skips to the expiration date of a drug record without building the {@link Drug}.
+     *
+     * @param in Buffer positioned at the start of a stock record, moved past it on return.
+     * @return The expiration date, or null for a plain stock item.
+     */
+    static LocalDateTime expirationDate(ByteBuffer in) {
+        if (!skipToDrug(in)) return null;
+        in.get();
+        skipString(in);
+        return TableCodec.readDate(in);
+    }
+
+    /**
+     * @param in Buffer positioned at the start of a stock record.
+     * @return Whether it is a drug record, then positioned at its drug fields.
+     */
+    private static boolean skipToDrug(ByteBuffer in) {
+        byte type = in.get();
+        in.position(in.position() + 2 * Long.BYTES + Integer.BYTES + Double.BYTES);
+        skipString(in);
+        if (in.get() != NO_DISCOUNT) {
+            in.position(in.position() + Double.BYTES + Long.BYTES + Integer.BYTES);
+        }
+        return type == DRUG;
+    }
+
+    private static void skipString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length > 0) in.position(in.position() + length);
+    }
+
+    void writeList(DataOutputStream out, List<Stock> items) throws IOException {
+        if (items == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(items.size());
+        for (Stock item : items) write(out, item);
+    }
+
+    List<Stock> readList(ByteBuffer in) {
+        int size = in.getInt();
+        if (size < 0) return null;
+        List<Stock> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) items.add(read(in));
+        return items;
+    }
+}
+
+class CustomerCodec implements TableCodec<Customer> {
+    private static final byte CUSTOMER = 0;
+    private static final byte PATIENT = 1;
+    private final StockCodec stock_codec = new StockCodec();
+
+    @Override
+    public void write(DataOutputStream out, Customer customer) throws IOException {
+        out.writeByte(customer instanceof Patient ? PATIENT : CUSTOMER);
+        TableCodec.writeUUID(out, customer.getID());
+        TableCodec.writeDate(out, customer.birthday);
+        TableCodec.writeString(out, customer.name);
+        TableCodec.writeDate(out, customer.last_access);
+        if (!(customer instanceof Patient)) return;
+
+        List<Prescription> prescriptions = ((Patient) customer).getPrescriptions();
+        if (prescriptions == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(prescriptions.size());
+        for (Prescription prescription : prescriptions) {
+            TableCodec.writeUUID(out, prescription.getID());
+            this.stock_codec.writeList(out, prescription.getItems());
+            TableCodec.writeDate(out, prescription.getLastFillTime());
+            Duration refill = prescription.getRefillDuration();
+            out.writeBoolean(refill != null);
+            if (refill != null) {
+                out.writeLong(refill.getSeconds());
+                out.writeInt(refill.getNano());
+            }
+        }
+    }
+
+    /**
+     * @param in Buffer positioned at the start of a customer record.
+     * @return The birthday, without decoding the rest of the record.
+     */
+    static LocalDateTime birthday(ByteBuffer in) {
+        ByteBuffer birthday = in.duplicate();
+        birthday.position(in.position() + 1 + 2 * Long.BYTES);
+        return TableCodec.readDate(birthday);
+    }
+
+    /**
+     * @param in Buffer positioned at the start of a customer record.
+     * @return The name, without decoding the rest of the record.
+     */
+    static String name(ByteBuffer in) {
+        ByteBuffer name = in.duplicate();
+        name.position(in.position() + 1 + 3 * Long.BYTES + Integer.BYTES);
+        return TableCodec.readString(name);
+    }
+
+    /**
+     * @param in Buffer positioned at the start of a customer record.
+     * @return The last access time, without decoding the rest of the record.
+     */
+    static LocalDateTime lastAccess(ByteBuffer in) {
+        int name = in.position() + 1 + 3 * Long.BYTES + Integer.BYTES;
+        ByteBuffer last_access = in.duplicate();
+        last_access.position(name + Integer.BYTES + Math.max(0, in.getInt(name)));
+        return TableCodec.readDate(last_access);
+    }
+
+    @Override
+    public Customer read(ByteBuffer in) {
+        byte type = in.get();
+        UUID id = TableCodec.readUUID(in);
+        LocalDateTime birthday = TableCodec.readDate(in);
+        String name = TableCodec.readString(in);
+        LocalDateTime last_access = TableCodec.readDate(in);
+        if (type == CUSTOMER) return new Customer(id, birthday, name, last_access);
+
+        int size = in.getInt();
+        List<Prescription> prescriptions = null;
+        if (size >= 0) {
+            prescriptions = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                UUID prescription_id = TableCodec.readUUID(in);
+                List<Stock> items = this.stock_codec.readList(in);
+                LocalDateTime last_fill_time = TableCodec.readDate(in);
+                Duration refill = null;
+                if (in.get() != 0) refill = Duration.ofSeconds(in.getLong(), in.getInt());
+                prescriptions.add(new Prescription(prescription_id, items, last_fill_time, refill));
+            }
+        }
+        return new Patient(id, birthday, name, last_access, prescriptions);
+    }
+}
+
+class AccountCodec implements TableCodec<Account> {
+    private final StockCodec stock_codec = new StockCodec();
+
+    @Override
+    public void write(DataOutputStream out, Account account) throws IOException {
+        TableCodec.writeUUID(out, account.getLogin());
+        TableCodec.writeDate(out, account.getBirthday());
+        TableCodec.writeString(out, account.getName());
+        out.writeByte(account.getPermissions().ordinal());
+
+        UUID password = account.getPassword();
+        out.writeBoolean(password != null);
+        if (password != null) TableCodec.writeUUID(out, password);
+        out.writeBoolean(account.isFirstLogin());
+        out.writeBoolean(account.isLocked());
+        out.writeInt(account.getFailureAttempts());
+
+        List<Notification> notifications = account.getNotifications();
+        out.writeInt(notifications.size());
+        for (Notification notification : notifications) {
+            out.writeByte(notification.permission().ordinal());
+            TableCodec.writeString(out, notification.notification());
+        }
+
+        List<Purchase> purchases = account.getPurchases();
+        if (purchases == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(purchases.size());
+        for (Purchase purchase : purchases) {
+            TableCodec.writeUUID(out, purchase.getID());
+            TableCodec.writeDate(out, purchase.getPurchaseDate());
+            this.stock_codec.writeList(out, purchase.getItems());
+        }
+    }
+
+    @Override
+    public Account read(ByteBuffer in) {
+        UUID login = TableCodec.readUUID(in);
+        LocalDateTime birthday = TableCodec.readDate(in);
+        String name = TableCodec.readString(in);
+        PermissionLevel permissions = PermissionLevel.values()[in.get()];
+        Account account = new Account(login, birthday, name, permissions);
+
+        if (in.get() != 0) account.setPasswordHash(TableCodec.readUUID(in));
+        account.setFirstLogin(in.get() != 0);
+        account.setLocked(in.get() != 0);
+        account.setFailureAttempts(in.getInt());
+
+        int notifications = in.getInt();
+        for (int i = 0; i < notifications; i++) {
+            PermissionLevel permission = PermissionLevel.values()[in.get()];
+            account.addNotification(new Notification(permission, TableCodec.readString(in)));
+        }
+
+        int size = in.getInt();
+        if (size >= 0) {
+            List<Purchase> purchases = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                UUID id = TableCodec.readUUID(in);
+                LocalDateTime purchase_date = TableCodec.readDate(in);
+                purchases.add(new Purchase(id, purchase_date, this.stock_codec.readList(in)));
+            }
+            account.setPurchases(purchases);
+        }
+        return account;
+    }
+}
@@ -0,0 +1,320 @@
+package PharmacyManagementSystem;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * {@link UUIDMap} is an open addressing hash map keyed by {@link UUID}. The two halves of every key
+ * are stored inline in a {@code long} array next to each other, and the values in a parallel array,
+ * so an entry costs no node or key object and a lookup probes adjacent slots with linear probing
+ * instead of following pointers.
+ *
+ * <p>Lookups and iteration never lock and may run while another thread writes. Writes are
+ * synchronized. A slot's key is written before its value is published and never changes after, and
+ * a removed entry leaves a tombstone in its slot until the next resize, so a reader sees each entry
+ * either before or after a write and an iterator never fails while the map changes. Values cannot
+ * be null.
+ *
+ * <p>Iterating {@link #values()} or {@link #forEach(BiConsumer)} allocates no entries. Entries and
+ * keys are built from the inline halves as they are visited.
+ *
+ * @param <V>
+ */
+class UUIDMap<V> extends AbstractMap<UUID, V> {
+    private static final Object REMOVED = new Object();
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * One generation of the arrays. A resize publishes a new one, readers keep the one they had.
+     */
+    private static final class Table {
+        final long[] keys;
+        final AtomicReferenceArray<Object> values;
+        final int mask;
+        final int shift;
+
+        Table(final int capacity) {
+            this.keys = new long[2 * capacity];
+            this.values = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+            this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        }
+
+        int capacity() {
+            return this.mask + 1;
+        }
+
+        /**
+         * @return The first slot to probe for a key, from Fibonacci hashing of both halves.
+         */
+        int slot(final long msb, final long lsb) {
+            long hash = (msb ^ Long.rotateLeft(lsb, 32)) * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> this.shift);
+        }
+
+        boolean matches(final int slot, final long msb, final long lsb) {
+            return this.keys[2 * slot] == msb && this.keys[2 * slot + 1] == lsb;
+        }
+
+        UUID key(final int slot) {
+            return new UUID(this.keys[2 * slot], this.keys[2 * slot + 1]);
+        }
+    }
+
+    private volatile Table table;
+    private volatile int size;
+    private int used;
+
+    UUIDMap() {
+        this.table = new Table(MIN_CAPACITY);
+    }
+
+    /**
+     * @param map Copied into the new map.
+     */
+    UUIDMap(final Map<UUID, ? extends V> map) {
+        this.table = new Table(capacityFor(map.size()));
+        putAll(map);
+    }
+
+    // Map API
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(final Object key) {
+        if (!(key instanceof UUID)) return null;
+        long msb = ((UUID) key).getMostSignificantBits();
+        long lsb = ((UUID) key).getLeastSignificantBits();
+        Table table = this.table;
+        for (int slot = table.slot(msb, lsb); ; slot = (slot + 1) & table.mask) {
+            Object value = table.values.getAcquire(slot);
+            if (value == null) return null;
+            if (table.matches(slot, msb, lsb)) return value == REMOVED ? null : (V) value;
+        }
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public synchronized V put(final UUID key, final V value) {
+        return put(key, value, false);
+    }
+
+    @Override
+    public synchronized V putIfAbsent(final UUID key, final V value) {
+        return put(key, value, true);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(final Object key) {
+        if (!(key instanceof UUID)) return null;
+        long msb = ((UUID) key).getMostSignificantBits();
+        long lsb = ((UUID) key).getLeastSignificantBits();
+        Table table = this.table;
+        for (int slot = table.slot(msb, lsb); ; slot = (slot + 1) & table.mask) {
+            Object value = table.values.get(slot);
+            if (value == null) return null;
+            if (table.matches(slot, msb, lsb)) {
+                if (value == REMOVED) return null;
+                table.values.setRelease(slot, REMOVED);
+                this.size--;
+                return (V) value;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.table = new Table(MIN_CAPACITY);
+        this.size = 0;
+        this.used = 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(final BiConsumer<? super UUID, ? super V> action) {
+        Table table = this.table;
+        for (int slot = 0; slot < table.capacity(); slot++) {
+            Object value = table.values.getAcquire(slot);
+            if (value != null && value != REMOVED) action.accept(table.key(slot), (V) value);
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<UUID, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return UUIDMap.this.size;
+            }
+
+            @Override
+            public Iterator<Map.Entry<UUID, V>> iterator() {
+                return new Slots<>() {
+                    @Override
+                    Map.Entry<UUID, V> at(final Table table, final int slot, final V value) {
+                        return new AbstractMap.SimpleImmutableEntry<>(table.key(slot), value);
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public int size() {
+                return UUIDMap.this.size;
+            }
+
+            @Override
+            public Iterator<V> iterator() {
+                return new Slots<>() {
+                    @Override
+                    V at(final Table table, final int slot, final V value) {
+                        return value;
+                    }
+                };
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void forEach(final Consumer<? super V> action) {
+                Table table = UUIDMap.this.table;
+                for (int slot = 0; slot < table.capacity(); slot++) {
+                    Object value = table.values.getAcquire(slot);
+                    if (value != null && value != REMOVED) action.accept((V) value);
+                }
+            }
+        };
+    }
+
+    /**
+     * Walks the live slots of the table at the time it was created. The value of the next slot is
+     * read once, so an entry removed after it was found is still returned whole.
+     */
+    private abstract class Slots<T> implements Iterator<T> {
+        private final Table table = UUIDMap.this.table;
+        private Object next_value;
+        private int next = advance(0);
+        private int last = -1;
+
+        abstract T at(Table table, int slot, V value);
+
+        @Override
+        public boolean hasNext() {
+            return this.next < this.table.capacity();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            V value = (V) this.next_value;
+            this.last = this.next;
+            this.next = advance(this.last + 1);
+            return at(this.table, this.last, value);
+        }
+
+        @Override
+        public void remove() {
+            if (this.last < 0) throw new IllegalStateException();
+            UUIDMap.this.remove(this.table.key(this.last));
+            this.last = -1;
+        }
+
+        private int advance(int slot) {
+            while (slot < this.table.capacity()) {
+                Object value = this.table.values.getAcquire(slot);
+                if (value != null && value != REMOVED) {
+                    this.next_value = value;
+                    break;
+                }
+                slot++;
+            }
+            return slot;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V put(final UUID key, final V value, final boolean if_absent) {
+        Objects.requireNonNull(value);
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        Table table = this.table;
+        int slot = table.slot(msb, lsb);
+        for (; ; slot = (slot + 1) & table.mask) {
+            Object previous = table.values.get(slot);
+            if (previous == null) break;
+            if (table.matches(slot, msb, lsb)) {
+                if (previous == REMOVED) {
+                    table.values.setRelease(slot, value);
+                    this.size++;
+                    return null;
+                }
+                if (!if_absent) table.values.setRelease(slot, value);
+                return (V) previous;
+            }
+        }
+
+        // A new key takes an empty slot, tombstones are only reclaimed by a resize.
+        if (4 * (this.used + 1) > 3 * table.capacity()) {
+            table = resize(capacityFor(this.size + 1));
+            slot = table.slot(msb, lsb);
+            while (table.values.get(slot) != null) slot = (slot + 1) & table.mask;
+        }
+        table.keys[2 * slot] = msb;
+        table.keys[2 * slot + 1] = lsb;
+        table.values.setRelease(slot, value);
+        this.used++;
+        this.size++;
+        return null;
+    }
+
+    /** Copies the live entries into a new table and publishes it, dropping the tombstones. */
+    private Table resize(final int capacity) {
+        Table from = this.table;
+        Table to = new Table(capacity);
+        for (int slot = 0; slot < from.capacity(); slot++) {
+            Object value = from.values.get(slot);
+            if (value == null || value == REMOVED) continue;
+            long msb = from.keys[2 * slot];
+            long lsb = from.keys[2 * slot + 1];
+            int target = to.slot(msb, lsb);
+            while (to.values.get(target) != null) target = (target + 1) & to.mask;
+            to.keys[2 * target] = msb;
+            to.keys[2 * target + 1] = lsb;
+            to.values.set(target, value);
+        }
+        this.used = this.size;
+        this.table = to;
+        return to;
+    }
+
+    /**
+     * @return The power of two capacity that holds {@code size} entries at most half full.
+     */
+    private static int capacityFor(final int size) {
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, 2 * size - 1)) << 1);
+    }
+}
@@ -0,0 +1,6 @@
+# Any arguments are passed to JMH, for example: .\benchmark.ps1 Checkout -p size=1000
+mvn -B -q -P benchmark package
+if ($LASTEXITCODE -ne 0) { exit $LASTEXITCODE }
+New-Item -ItemType Directory -Force build\jmh | Out-Null
+$commit = git rev-parse --short HEAD
+java -jar build\benchmarks.jar -prof gc -rf json -rff "build\jmh\$commit.json" @args
@@ -0,0 +1,6 @@
+#!/bin/bash
+
+# Any arguments are passed to JMH, for example: ./benchmark.sh Checkout -p size=1000
+mvn -B -q -P benchmark package || exit 1
+mkdir -p build/jmh
+java -jar build/benchmarks.jar -prof gc -rf json -rff "build/jmh/$(git rev-parse --short HEAD).json" "$@"
@@ -0,0 +1,55 @@
+package PharmacyManagementSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/** One line checkouts and prescription pickups against stores of growing size. */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CheckoutBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    private SyntheticStore store;
+    private Backend backend;
+    private SplittableRandom random;
+
+    @Setup
+    public void setup() {
+        this.store = SyntheticStore.populate(this.size);
+        this.backend = Backend.get();
+        this.random = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    public Response purchaseStock() {
+        UUID customer = this.store.customers[this.random.nextInt(this.size)];
+        UUID item = this.store.stock[this.random.nextInt(this.size)];
+        return this.backend.purchaseStock(SyntheticStore.purchase(customer, item, 1));
+    }
+
+    @Benchmark
+    public Response pickupPrescription() {
+        int patient = this.random.nextInt(this.store.patients.length);
+        return this.backend.pickupPrescription(
+                List.of(this.store.patients[patient], this.store.prescriptions[patient]));
+    }
+}
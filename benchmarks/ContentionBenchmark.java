@@ -0,0 +1,91 @@
+package PharmacyManagementSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent checkouts through the {@link API}. Each cart has four lines, and each line comes from
+ * a small set of items every lane sells with probability {@code overlap}, or from the lane's own
+ * items otherwise.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ContentionBenchmark {
+    private static final int LANES = 4;
+    private static final int HOT = 16;
+    private static final int LINES = 4;
+
+    @State(Scope.Benchmark)
+    public static class Store {
+        @Param({"0", "0.1", "0.5", "1"})
+        double overlap;
+
+        SyntheticStore store;
+        API api;
+        final AtomicInteger lanes = new AtomicInteger();
+
+        @Setup
+        public void setup() {
+            this.store = SyntheticStore.populate(100_000);
+            this.api = new API();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Lane {
+        Session session;
+        SplittableRandom random;
+        int first;
+        int items;
+
+        @Setup
+        public void setup(final Store store) {
+            int lane = store.lanes.getAndIncrement() % LANES;
+            this.session = store.store.adminSession();
+            this.random = new SplittableRandom(lane);
+            this.items = (store.store.size - HOT) / LANES;
+            this.first = HOT + lane * this.items;
+        }
+    }
+
+    @Benchmark
+    public Response purchase(final Store store, final Lane lane) {
+        List<UUID> items = new ArrayList<>(LINES);
+        List<Integer> quantities = new ArrayList<>(LINES);
+        for (int i = 0; i < LINES; i++) {
+            int index =
+                    lane.random.nextDouble() < store.overlap
+                            ? lane.random.nextInt(HOT)
+                            : lane.first + lane.random.nextInt(lane.items);
+            items.add(store.store.stock[index]);
+            quantities.add(1);
+        }
+
+        List<Object> data = new ArrayList<>();
+        data.add(store.store.customers[lane.random.nextInt(store.store.size)]);
+        data.add(items);
+        data.add(quantities);
+        return store.api.receive(lane.session, Request.PurchaseStock, data);
+    }
+}
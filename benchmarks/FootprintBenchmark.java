@@ -0,0 +1,113 @@
+package PharmacyManagementSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory per SKU of the inventory, as a map of objects and as a {@link ColumnStore} on or off the
+ * heap, and the cost of looking an item up in it. The footprint is printed by the fork once the
+ * store is imported: the live heap and direct memory after a full GC, less what was live before,
+ * divided by the number of items. It includes the {@link SkuRegistry}.
+ *
+ * <p>Ten million SKUs need a larger heap than the default {@code -Xmx12g} on small machines, run
+ * one size with {@code -p size=1000000} there.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class FootprintBenchmark {
+    private static final long ID_BITS = 0x5ca1ab1e5ca1ab1eL;
+
+    @Param({"map", "columns", "offheap"})
+    String store;
+
+    @Param({"1000000", "10000000"})
+    int size;
+
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        SyntheticStore.quiet();
+        InventoryControl inventory = Backend.get().inventory;
+        if (this.store.equals("map")) inventory.setStock(new UUIDMap<>());
+        else inventory.setStock(new ColumnStore(inventory.getSkus(), this.store.equals("offheap")));
+
+        long heap = usedHeap();
+        long direct = usedDirect();
+        LocalDateTime now = LocalDateTime.now();
+        SplittableRandom random = new SplittableRandom(this.size);
+        for (int start = 0; start < this.size; start += 100_000) {
+            List<Stock> items = new ArrayList<>();
+            for (int i = start; i < Math.min(start + 100_000, this.size); i++) {
+                double price = 1 + random.nextInt(10_000) / 100.0;
+                if (i % 2 == 0) {
+                    items.add(new Stock(id(i), 1_000, price, "Item " + i, null));
+                } else {
+                    items.add(
+                            new Drug(
+                                    id(i),
+                                    1_000,
+                                    price,
+                                    "Drug " + i,
+                                    null,
+                                    i % 10 == 1,
+                                    "Compound " + i,
+                                    now.plusDays(1 + random.nextInt(730))));
+                }
+            }
+            inventory.importStock(items);
+        }
+
+        System.err.printf(
+                "%s, %d SKUs: %.1f heap bytes and %.1f direct bytes per SKU%n",
+                this.store,
+                this.size,
+                (usedHeap() - heap) / (double) this.size,
+                (usedDirect() - direct) / (double) this.size);
+        this.random = new SplittableRandom(1);
+    }
+
+    @Benchmark
+    public int lookup() {
+        return Backend.get().inventory.findStock(id(this.random.nextInt(this.size))).getQuantity();
+    }
+
+    private static UUID id(final int i) {
+        return new UUID(ID_BITS, i);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) return pool.getMemoryUsed();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,62 @@
+package PharmacyManagementSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/** {@link BulkImport#stock(String)} of a generated CSV file into an empty inventory. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ImportBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void write() throws IOException {
+        SyntheticStore.quiet();
+        this.file = Files.createTempFile("stock", ".csv");
+        try (BufferedWriter out = Files.newBufferedWriter(this.file)) {
+            for (int i = 0; i < this.size; i++) {
+                out.write(100 + i % 900 + "," + (1 + i % 5000 / 100.0) + ",Item " + i + ",0\n");
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        Backend.get().inventory.setStock(new UUIDMap<>());
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(this.file);
+    }
+
+    @Benchmark
+    public int importStock() {
+        BulkImport.stock(this.file.toString());
+        return Backend.get().inventory.getStock().size();
+    }
+}
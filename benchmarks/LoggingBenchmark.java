@@ -0,0 +1,51 @@
+package PharmacyManagementSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The checkout path with every log category enabled against every category off, to show what
+ * disabled messages cost. Run with {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingBenchmark {
+    @Param({"Trace", "Audit", "Off"})
+    String level;
+
+    private SyntheticStore store;
+    private Backend backend;
+    private SplittableRandom random;
+
+    @Setup
+    public void setup() {
+        this.store = SyntheticStore.populate(1000);
+        this.backend = Backend.get();
+        this.random = new SplittableRandom(42);
+        Log.setLevel(Level.valueOf(this.level));
+    }
+
+    @Benchmark
+    public Response purchaseStock() {
+        UUID customer = this.store.customers[this.random.nextInt(this.store.size)];
+        UUID item = this.store.stock[this.random.nextInt(this.store.size)];
+        return this.backend.purchaseStock(SyntheticStore.purchase(customer, item, 1));
+    }
+}
@@ -0,0 +1,55 @@
+package PharmacyManagementSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/** {@link Backend#checkLocked(String)} followed by {@link Backend#login(String)} and a logout. */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LoginBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    private SyntheticStore store;
+    private Backend backend;
+    private Session session;
+    private SplittableRandom random;
+
+    @Setup
+    public void setup() {
+        this.store = SyntheticStore.populate(this.size);
+        this.backend = Backend.get();
+        this.session = this.backend.openSession();
+        this.random = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    public Account login() {
+        this.backend.enterSession(this.session);
+        try {
+            this.backend.checkLocked(this.store.logins[this.random.nextInt(this.size)]);
+            this.backend.login(SyntheticStore.PASSWORD);
+            Account account = this.backend.getLoggedIn();
+            this.backend.logout();
+            return account;
+        } finally {
+            this.backend.exitSession();
+        }
+    }
+}
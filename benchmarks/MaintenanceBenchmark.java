@@ -0,0 +1,63 @@
+package PharmacyManagementSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Backend#update()} and each of its {@link Maintenance} jobs on a steady store. Every run
+ * first sells one item, so the incremental jobs have a change to process.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MaintenanceBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    @Param({
+        "update",
+        "sessions",
+        "auto-orders",
+        "expiry",
+        "customers",
+        "no-quantity",
+        "discrepancies"
+    })
+    String job;
+
+    private SyntheticStore store;
+    private Backend backend;
+    private int next;
+
+    @Setup
+    public void setup() {
+        this.store = SyntheticStore.populate(this.size);
+        this.backend = Backend.get();
+        // Someone must be logged in for the expiry job to do its work.
+        this.store.adminSession();
+    }
+
+    @Benchmark
+    public void run() {
+        Stock item = this.backend.inventory.findStock(this.store.stock[this.next++ % this.size]);
+        this.backend.inventory.sellStock(item, 1);
+        item.setQuantity(item.getQuantity() - 1);
+
+        if (this.job.equals("update")) this.backend.update();
+        else this.backend.getMaintenance().run(this.job);
+    }
+}
@@ -0,0 +1,70 @@
+package PharmacyManagementSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/** Startup recovery of a checkpointed store through {@link Journal#recover(API)}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RecoveryBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void checkpoint() throws IOException {
+        SyntheticStore.populate(this.size);
+        this.directory = Files.createTempDirectory("journal");
+        Journal journal = new Journal(this.directory.toString());
+        journal.checkpoint(Backend.get());
+        journal.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        Backend backend = Backend.get();
+        backend.inventory.setStock(new UUIDMap<>());
+        backend.getCustomers().clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int recover() {
+        Journal journal = new Journal(this.directory.toString());
+        try {
+            journal.recover(new API(journal));
+            return Backend.get().inventory.getStock().size();
+        } finally {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package PharmacyManagementSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InventoryControl#searchStock(String)} over a catalog of generated drug names, built from
+ * syllables so that common fragments such as "pro" match a large share of it and whole names match
+ * a few items.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchBenchmark {
+    private static final String[] SYLLABLES = {
+        "ace", "ami", "bu", "cil", "da", "fen", "ga", "i", "lin", "min", "nap", "o", "pam", "phen",
+        "pro", "rox", "sar", "ta", "tin", "val", "xi", "zol"
+    };
+    private static final String[] FORMS = {"Tablets", "Capsules", "Syrup", "Cream", "Drops"};
+
+    @Param({"100000", "1000000"})
+    int size;
+
+    @Param({"ibupro", "pro", "naprox 50"})
+    String query;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        SyntheticStore.quiet();
+        InventoryControl inventory = Backend.get().inventory;
+        inventory.setStock(new UUIDMap<>());
+        SplittableRandom random = new SplittableRandom(this.size);
+        LocalDateTime expiration = LocalDateTime.now().plusYears(1);
+        List<Stock> items = new ArrayList<>();
+        for (int i = 0; i < this.size; i++) {
+            StringBuilder compound = new StringBuilder();
+            for (int j = 0, length = 2 + random.nextInt(3); j < length; j++) {
+                compound.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            String name = compound + " " + FORMS[random.nextInt(FORMS.length)];
+            String drug_name = compound + " " + (5 * (1 + random.nextInt(100))) + "mg";
+            items.add(
+                    new Drug(
+                            new UUID(random.nextLong(), random.nextLong()),
+                            1_000,
+                            1,
+                            name,
+                            null,
+                            false,
+                            drug_name,
+                            expiration));
+            if (items.size() == 100_000) {
+                inventory.importStock(items);
+                items = new ArrayList<>();
+            }
+        }
+        inventory.importStock(items);
+    }
+
+    @Benchmark
+    public List<Stock> search() {
+        return Backend.get().inventory.searchStock(this.query);
+    }
+}
@@ -0,0 +1,102 @@
+package PharmacyManagementSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips of a {@link Request#GetNotifications} frame through the {@link Server} while many
+ * logged in connections stay open. Each connection needs two file descriptors, so raise {@code
+ * ulimit -n} before running with 10000 connections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServerBenchmark {
+    @Param({"1000", "10000"})
+    int connections;
+
+    private Server server;
+    private SocketChannel[] channels;
+    private byte[] request;
+    private ByteBuffer length;
+    private SplittableRandom random;
+
+    @Setup
+    public void setup() throws Exception {
+        SyntheticStore store = SyntheticStore.populate(this.connections);
+        this.server = new Server(new API(), "localhost", 0);
+        this.channels = new SocketChannel[this.connections];
+        this.request = Server.frame(Server.REQUEST, Request.GetNotifications.ordinal(), null);
+        this.length = ByteBuffer.allocate(Integer.BYTES);
+        this.random = new SplittableRandom(42);
+
+        InetSocketAddress address = new InetSocketAddress("localhost", this.server.getPort());
+        for (int i = 0; i < this.connections; i++) {
+            SocketChannel channel = SocketChannel.open(address);
+            channel.socket().setTcpNoDelay(true);
+            this.channels[i] = channel;
+            call(channel, Server.frame(Server.REQUEST, Request.Login.ordinal(), store.logins[i]));
+            Reply reply =
+                    call(
+                            channel,
+                            Server.frame(
+                                    Server.RESPONSE,
+                                    Response.GetPassword.ordinal(),
+                                    SyntheticStore.PASSWORD));
+            if (reply.response() != Response.Ok) {
+                throw new IllegalStateException("Login failed: " + reply.response());
+            }
+        }
+    }
+
+    @TearDown
+    public void close() throws IOException {
+        for (SocketChannel channel : this.channels) {
+            if (channel != null) channel.close();
+        }
+        this.server.close();
+    }
+
+    @Benchmark
+    public Reply roundTrip() throws Exception {
+        return call(this.channels[this.random.nextInt(this.connections)], this.request);
+    }
+
+    private Reply call(final SocketChannel channel, final byte[] frame) throws Exception {
+        ByteBuffer out = ByteBuffer.wrap(frame);
+        while (out.hasRemaining()) channel.write(out);
+
+        this.length.clear();
+        readFully(channel, this.length);
+        ByteBuffer payload = ByteBuffer.allocate(this.length.getInt(0));
+        readFully(channel, payload);
+        return Server.reply(payload.array());
+    }
+
+    private static void readFully(final SocketChannel channel, final ByteBuffer buffer)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new IOException("Server closed the connection.");
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package PharmacyManagementSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Requests from several terminals, each in its own {@link Session}, sharing one backend. */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class SessionBenchmark {
+    @State(Scope.Benchmark)
+    public static class Store {
+        SyntheticStore store;
+        API api;
+
+        @Setup
+        public void setup() {
+            this.store = SyntheticStore.populate(1000);
+            this.api = new API();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Terminal {
+        Session session;
+
+        @Setup
+        public void setup(final Store store) {
+            this.session = store.store.adminSession();
+        }
+    }
+
+    @Benchmark
+    public Reply query(final Store store, final Terminal terminal) {
+        return store.api.query(terminal.session, Request.GetNotifications, null);
+    }
+
+    @Benchmark
+    public Session connect(final Store store) {
+        Session session = store.api.connect();
+        store.api.disconnect(session);
+        return session;
+    }
+}
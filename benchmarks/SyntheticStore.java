@@ -0,0 +1,150 @@
+package PharmacyManagementSystem;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * {@link SyntheticStore} fills the {@link Backend} singleton with a generated store for the
+ * benchmarks: {@code size} stock items, half of them drugs, {@code size} customers, half of them
+ * patients with one prescription, and {@code size} cashier accounts. Quantities are high enough
+ * that no benchmark runs out of stock or crosses a reorder minimum.
+ */
+final class SyntheticStore {
+    static final String PASSWORD = "password";
+    static final int QUANTITY = 1_000_000_000;
+
+    final int size;
+    final UUID[] stock;
+    final UUID[] customers;
+    final UUID[] patients;
+    final UUID[] prescriptions;
+    final String[] logins;
+    final Account admin;
+
+    private SyntheticStore(final int size) {
+        this.size = size;
+        this.stock = new UUID[size];
+        this.customers = new UUID[size];
+        this.patients = new UUID[size / 2];
+        this.prescriptions = new UUID[size / 2];
+        this.logins = new String[size];
+        this.admin = Backend.get().getAccounts().get(UUID.nameUUIDFromBytes("admin".getBytes()));
+    }
+
+    /**
+     * Silences the console and every log category, so benchmarks measure the work and not the
+     * terminal.
+     */
+    static void quiet() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Log.setLevel(Level.Off);
+    }
+
+    /**
+     * @param size Number of stock items, customers and accounts.
+     * @return The IDs of what was generated.
+     */
+    static SyntheticStore populate(final int size) {
+        quiet();
+        SyntheticStore store = new SyntheticStore(size);
+        Backend backend = Backend.get();
+        SplittableRandom random = new SplittableRandom(size);
+        LocalDateTime now = LocalDateTime.now();
+
+        List<Stock> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            UUID id = UUID.nameUUIDFromBytes(("sku-" + i).getBytes());
+            double price = 1 + random.nextInt(10_000) / 100.0;
+            if (i % 2 == 0) {
+                items.add(new Stock(id, QUANTITY, price, "Item " + i, null));
+            } else {
+                LocalDateTime expiration = now.plusDays(1 + random.nextInt(730));
+                items.add(
+                        new Drug(
+                                id,
+                                QUANTITY,
+                                price,
+                                "Drug " + i,
+                                null,
+                                i % 10 == 1,
+                                "Compound " + i,
+                                expiration));
+            }
+            store.stock[i] = id;
+        }
+        backend.inventory.importStock(items);
+
+        for (int i = 0; i < size; i++) {
+            UUID id = new UUID(random.nextLong(), random.nextLong());
+            LocalDateTime birthday = now.minusYears(18 + random.nextInt(70));
+            if (i % 2 == 0) {
+                backend.getCustomers().put(id, new Customer(id, birthday, "Customer " + i, now));
+            } else {
+                List<Stock> prescribed = new ArrayList<>();
+                for (int j = 0; j < 2; j++) {
+                    Stock item = items.get(random.nextInt(size));
+                    prescribed.add(
+                            new Stock(item.getID(), 1, item.getPrice(), item.getName(), null));
+                }
+                Prescription prescription =
+                        new Prescription(
+                                new UUID(random.nextLong(), random.nextLong()),
+                                prescribed,
+                                null,
+                                Duration.ZERO);
+                List<Prescription> prescriptions = new ArrayList<>();
+                prescriptions.add(prescription);
+                backend.getCustomers()
+                        .put(id, new Patient(id, birthday, "Patient " + i, now, prescriptions));
+                store.patients[i / 2] = id;
+                store.prescriptions[i / 2] = prescription.getID();
+            }
+            store.customers[i] = id;
+        }
+
+        for (int i = 0; i < size; i++) {
+            String login = "user" + i;
+            Account account =
+                    new Account(
+                            UUID.nameUUIDFromBytes(login.getBytes()),
+                            now.minusYears(30),
+                            "User " + i,
+                            PermissionLevel.Cashier);
+            account.setPassword(PASSWORD);
+            account.setFirstLogin(false);
+            backend.getAccounts().put(account.getLogin(), account);
+            store.logins[i] = login;
+        }
+
+        return store;
+    }
+
+    /**
+     * @return A new session with the admin logged in.
+     */
+    Session adminSession() {
+        Session session = Backend.get().openSession();
+        session.setLoggedIn(this.admin);
+        return session;
+    }
+
+    /**
+     * @param customer
+     * @param item
+     * @param quantity
+     * @return The data of a one line {@link Request#PurchaseStock}.
+     */
+    static List<Object> purchase(final UUID customer, final UUID item, final int quantity) {
+        List<Object> data = new ArrayList<>();
+        data.add(customer);
+        data.add(List.of(item));
+        data.add(List.of(quantity));
+        return data;
+    }
+}
@@ -0,0 +1,98 @@
+package PharmacyManagementSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup latency and bytes per entry of {@link UUIDMap} against the {@link HashMap} and {@link
+ * ConcurrentHashMap} it replaces for the backend tables. The footprint is printed by the fork once
+ * the map is filled: the live heap after a full GC, less what was live before, divided by the
+ * number of entries. Every entry has its own key object, as after a recovery, and the values are
+ * shared, so only the map itself is counted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UUIDMapBenchmark {
+    @Param({"hash", "concurrent", "uuid"})
+    String map;
+
+    @Param({"1000", "1000000"})
+    int size;
+
+    private Map<UUID, Object> table;
+    private UUID[] hits;
+    private UUID[] misses;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        SplittableRandom random = new SplittableRandom(this.size);
+        this.hits = new UUID[this.size];
+        this.misses = new UUID[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.hits[i] = new UUID(random.nextLong(), random.nextLong());
+            this.misses[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        Object value = new Object();
+
+        long heap = usedHeap();
+        this.table =
+                switch (this.map) {
+                    case "hash" -> new HashMap<>();
+                    case "concurrent" -> new ConcurrentHashMap<>();
+                    default -> new UUIDMap<>();
+                };
+        for (UUID key : this.hits) {
+            this.table.put(
+                    new UUID(key.getMostSignificantBits(), key.getLeastSignificantBits()), value);
+        }
+        System.err.printf(
+                "%s, %d entries: %.1f bytes per entry%n",
+                this.map, this.size, (usedHeap() - heap) / (double) this.size);
+        this.random = new SplittableRandom(1);
+    }
+
+    @Benchmark
+    public Object hit() {
+        return this.table.get(this.hits[this.random.nextInt(this.size)]);
+    }
+
+    @Benchmark
+    public Object miss() {
+        return this.table.get(this.misses[this.random.nextInt(this.size)]);
+    }
+
+    @Benchmark
+    public int iterate() {
+        int count = 0;
+        for (Object value : this.table.values()) if (value != null) count++;
+        return count;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}